@@ -14,6 +14,9 @@ public class MessageConstant {
     public static final String CATEGORY_BE_RELATED_BY_SETMEAL = "当前分类关联了套餐,不能删除";
     public static final String CATEGORY_BE_RELATED_BY_DISH = "当前分类关联了菜品,不能删除";
     public static final String SHOPPING_CART_IS_NULL = "购物车数据为空，不能下单";
+    public static final String SHOPPING_CART_OPERATION_INVALID = "购物车操作不正确";
+    public static final String SHOPPING_CART_OPERATION_TOO_MANY = "购物车操作过多，请分批提交";
+    public static final String SHOPPING_CART_ITEM_NOT_FOUND = "菜品或套餐不存在";
     public static final String ADDRESS_BOOK_IS_NULL = "用户地址为空，不能下单";
     public static final String LOGIN_FAILED = "登录失败";
     public static final String UPLOAD_FAILED = "文件上传失败";
@@ -25,5 +28,10 @@ public class MessageConstant {
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
     public static final String ORDER_COMPLETED = "订单已完成";
+    public static final String ORDER_NUMBER_UNAVAILABLE = "暂时无法生成订单号，请稍后再试";
+    public static final String REPORT_DATE_INVALID = "开始日期不能晚于结束日期";
+    public static final String REPORT_EXPORT_BUSY = "导出任务过多，请稍后再试";
+    public static final String REPORT_EXPORT_NOT_FOUND = "导出任务不存在或已过期";
+    public static final String REPORT_EXPORT_NOT_READY = "导出任务尚未完成";
 
 }
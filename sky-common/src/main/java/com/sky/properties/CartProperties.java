@@ -0,0 +1,18 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cart")
+@Data
+public class CartProperties {
+
+    /**
+     * 购物车存储相关配置
+     */
+    private String store; //存储方式：redis或mysql
+    private long ttl; //redis中购物车最后一次修改后的保留时间，单位分钟
+
+}
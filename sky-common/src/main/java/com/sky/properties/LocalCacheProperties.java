@@ -0,0 +1,34 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class LocalCacheProperties {
+
+    /**
+     * 本地一级缓存相关配置
+     */
+    private long localMaximumSize; //每个缓存最多保存的条目数
+    private long localTtl; //写入后的过期时间，单位秒
+
+    /**
+     * redis二级缓存写入后的过期时间，单位秒
+     */
+    private long redisTtl;
+
+    /**
+     * 缓存失效通知的redis频道
+     */
+    private String evictChannel;
+
+    /**
+     * 缓存未命中时，多个节点并发加载同一个key的协调配置
+     */
+    private long loadLockTtl; //加载锁的租约时间，单位毫秒
+    private long loadWaitInterval; //等待其他节点加载时查询redis的间隔，单位毫秒
+
+}
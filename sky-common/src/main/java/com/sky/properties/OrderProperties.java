@@ -0,0 +1,36 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 订单号生成相关配置
+     */
+    private Integer nodeId; //当前节点编号，范围0~1023，不配置时通过redis自动分配
+    private long nodeLeaseTtl; //自动分配的节点编号在redis中的租约时间，单位秒
+
+    /**
+     * 未付款订单超时相关配置
+     */
+    private long paymentTimeout; //下单后超过多久未付款自动取消，单位分钟
+
+    /**
+     * 订单事件发件箱相关配置
+     */
+    private int eventBatchSize; //每批推送的事件数
+    private int eventMaxRetry; //推送失败的最大次数，达到后不再推送
+    private long eventRetryInterval; //推送失败后的重试间隔，单位秒
+    private long eventRetentionDays; //已推送事件的保留天数
+
+    /**
+     * 支付回调去重相关配置
+     */
+    private long payNotifyDedupTtl; //已处理的微信支付交易号的保留时间，单位小时
+
+}
@@ -0,0 +1,19 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.redis")
+@Data
+public class RedisSerializerProperties {
+
+    /**
+     * redis value的序列化格式
+     * smile：二进制json，体积小，默认使用
+     * json：文本json，便于在redis客户端中直接查看
+     */
+    private String valueFormat;
+
+}
@@ -0,0 +1,20 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report")
+@Data
+public class ReportProperties {
+
+    /**
+     * 异步导出报表相关配置
+     */
+    private String exportDir; //导出文件存放目录，多节点部署时必须为各节点共享的存储
+    private int exportThreads; //导出线程数
+    private int exportQueueCapacity; //排队中的导出任务上限
+    private long exportTtl; //导出任务及文件的保留时间，单位分钟
+
+}
@@ -0,0 +1,21 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 管理端WebSocket推送相关配置
+     */
+    private int queueCapacity; //每个连接待发送消息队列的容量
+    private String overflowPolicy; //队列已满时的处理方式：drop丢弃最早的消息，close断开连接
+    private long sendTimeout; //单条消息的发送超时时间，单位毫秒
+    private long batchWindow; //合并发送通知的时间窗口，单位毫秒，0表示不合并
+    private int historySize; //每个节点保留的最近通知数，客户端重连后从中补发
+
+}
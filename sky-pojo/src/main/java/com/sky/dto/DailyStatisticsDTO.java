@@ -0,0 +1,35 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按天分组的统计数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyStatisticsDTO implements Serializable {
+
+    //日期
+    private LocalDate date;
+
+    //营业额（当天已完成订单的总金额）
+    private Double turnover;
+
+    //有效订单数（当天已完成订单的数量）
+    private Integer validOrderCount;
+
+    //订单总数
+    private Integer totalOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+
+}
@@ -0,0 +1,33 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShoppingCartOperationDTO implements Serializable {
+
+    /**
+     * 操作类型 1增加数量 2设置数量 3删除商品
+     */
+    public static final Integer ADD = 1;
+    public static final Integer SET = 2;
+    public static final Integer REMOVE = 3;
+
+    //操作类型
+    private Integer type;
+
+    private Long dishId;
+    private Long setmealId;
+    private String dishFlavor;
+
+    //增加或设置的数量，增加时为空则加1，设置为0时删除商品
+    private Integer number;
+
+}
@@ -0,0 +1,40 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusinessDailyStat implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //统计日期
+    private LocalDate statDate;
+
+    //营业额（当天已完成订单的总金额）
+    private BigDecimal turnover;
+
+    //有效订单数
+    private Integer validOrderCount;
+
+    //订单总数
+    private Integer totalOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,60 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件（发件箱）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent implements Serializable {
+
+    /**
+     * 事件类型 1来单提醒 2客户催单
+     */
+    public static final Integer NEW_ORDER = 1;
+    public static final Integer REMINDER = 2;
+
+    /**
+     * 推送状态 0待推送 1已推送 2推送失败
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer SENT = 1;
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //订单id
+    private Long orderId;
+
+    //事件类型
+    private Integer type;
+
+    //提醒内容
+    private String content;
+
+    //推送状态
+    private Integer status;
+
+    //推送失败次数
+    private Integer retryCount;
+
+    //下次推送时间
+    private LocalDateTime nextRetryTime;
+
+    //推送序号
+    private Long sentSeq;
+
+    //创建时间
+    private LocalDateTime createTime;
+}
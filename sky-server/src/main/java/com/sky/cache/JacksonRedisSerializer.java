@@ -0,0 +1,62 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 基于jackson的redis value序列化器，具体的数据格式（json、smile）由传入的ObjectMapper决定
+ * 写入时按Object类型序列化，使根对象也带上类型信息，读取时无需指定类型
+ */
+public class JacksonRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter objectWriter;
+
+    public JacksonRedisSerializer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.objectWriter = objectMapper.writerFor(Object.class);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+
+        try {
+            return objectWriter.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("序列化redis数据失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        Object value;
+        try {
+            value = objectMapper.readValue(bytes, Object.class);
+        } catch (Exception e) {
+            throw new SerializationException("反序列化redis数据失败: " + e.getMessage(), e);
+        }
+
+        //缓存中的空值标记需要还原为单例，缓存才能识别
+        if (value instanceof NullValue) {
+            return NullValue.INSTANCE;
+        }
+
+        return value;
+    }
+
+}
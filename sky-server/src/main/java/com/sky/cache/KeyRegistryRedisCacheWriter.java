@@ -0,0 +1,98 @@
+package com.sky.cache;
+
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * 带key登记的redis缓存写入器
+ * 写入缓存时把key登记到该缓存对应的set中，清空缓存时只删除登记过的key，避免使用KEYS扫描整个redis
+ */
+public class KeyRegistryRedisCacheWriter implements RedisCacheWriter {
+
+    //登记缓存key的set的前缀，完整key为：cache_keys:缓存名
+    private static final String REGISTRY_KEY_PREFIX = "cache_keys:";
+
+    private final RedisCacheWriter delegate;
+
+    private final RedisConnectionFactory connectionFactory;
+
+    public KeyRegistryRedisCacheWriter(RedisCacheWriter delegate, RedisConnectionFactory connectionFactory) {
+        this.delegate = delegate;
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        delegate.put(name, key, value, ttl);
+        register(name, key);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return delegate.get(name, key);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        byte[] existing = delegate.putIfAbsent(name, key, value, ttl);
+        register(name, key);
+        return existing;
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.setCommands().sRem(registryKey(name), key);
+        }
+    }
+
+    /**
+     * 清空缓存：删除登记过的key和登记set本身，复杂度只与该缓存的key数量有关
+     * @param name
+     * @param pattern
+     */
+    @Override
+    public void clean(String name, byte[] pattern) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            byte[] registryKey = registryKey(name);
+            Set<byte[]> keys = connection.setCommands().sMembers(registryKey);
+            if (keys != null && !keys.isEmpty()) {
+                connection.keyCommands().del(keys.toArray(new byte[0][]));
+            }
+            connection.keyCommands().del(registryKey);
+        }
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new KeyRegistryRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), connectionFactory);
+    }
+
+    private void register(String name, byte[] key) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.setCommands().sAdd(registryKey(name), key);
+        }
+    }
+
+    private byte[] registryKey(String name) {
+        return (REGISTRY_KEY_PREFIX + name).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+
+/**
+ * 菜品、套餐快照缓存，按id缓存单个菜品或套餐，供购物车、再来一单和管理端详情查询使用
+ * 缓存的对象为共享实例，调用方只能读取，不能修改
+ * 快照可能短暂落后于数据库，删除前的状态校验等需要准确数据的场景应直接查询数据库
+ * 不存在的id不会被缓存，redis中的快照按 sky.cache.redis-ttl 过期
+ */
+@Component
+public class ProductSnapshotCache {
+
+    public static final String DISH_CACHE = "dishSnapshotCache";
+
+    public static final String SETMEAL_CACHE = "setmealSnapshotCache";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    /**
+     * 根据id查询菜品，未命中时查询数据库并写入缓存
+     * @param id
+     * @return 菜品不存在时返回null
+     */
+    public Dish getDish(Long id) {
+        return cacheManager.getCache(DISH_CACHE).get(id, () -> dishMapper.getById(id));
+    }
+
+    /**
+     * 根据id查询套餐，未命中时查询数据库并写入缓存
+     * @param id
+     * @return 套餐不存在时返回null
+     */
+    public Setmeal getSetmeal(Long id) {
+        return cacheManager.getCache(SETMEAL_CACHE).get(id, () -> setmealMapper.getById(id));
+    }
+
+    /**
+     * 清除菜品快照
+     * @param ids
+     */
+    public void evictDishes(Collection<Long> ids) {
+        evict(DISH_CACHE, ids);
+    }
+
+    /**
+     * 清除套餐快照
+     * @param ids
+     */
+    public void evictSetmeals(Collection<Long> ids) {
+        evict(SETMEAL_CACHE, ids);
+    }
+
+    /**
+     * 清除缓存，处于事务中时在事务提交后清除，避免提交前被其他请求重新加载旧数据
+     * @param cacheName
+     * @param ids
+     */
+    private void evict(String cacheName, Collection<Long> ids) {
+
+        Cache cache = cacheManager.getCache(cacheName);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.forEach(cache::evict);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(cache::evict);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,269 @@
+package com.sky.cache;
+
+import com.sky.properties.LocalCacheProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二级缓存：本地Caffeine缓存为一级，redis缓存为二级
+ * 写入或删除时通过redis频道通知其他节点清除本地缓存
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    //加载数据时的租约锁key前缀，完整key为：cache_lock:缓存名:key
+    private static final String LOCK_KEY_PREFIX = "cache_lock:";
+
+    //只释放自己持有的锁
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final String name;
+
+    //本节点标识，随失效通知一起发出
+    private final String nodeId;
+
+    //一级缓存，key统一转为字符串，与redis中的key以及失效通知保持一致
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+
+    //二级缓存
+    private final Cache redisCache;
+
+    //正在加载的key，同一个key的并发加载合并为一次，在Caffeine的计算方法之外等待，不占用其内部锁
+    private final Map<String, CompletableFuture<Object>> loadingMap = new ConcurrentHashMap<>();
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final LocalCacheProperties localCacheProperties;
+
+    public TwoLevelCache(String name,
+                         String nodeId,
+                         com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+                         Cache redisCache,
+                         StringRedisTemplate stringRedisTemplate,
+                         LocalCacheProperties localCacheProperties) {
+        super(true);
+        this.name = name;
+        this.nodeId = nodeId;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.localCacheProperties = localCacheProperties;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+
+        String localKey = String.valueOf(key);
+
+        //先查本地缓存
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            return value;
+        }
+
+        //再查redis，命中后回填本地缓存
+        ValueWrapper valueWrapper = redisCache.get(key);
+        if (valueWrapper == null) {
+            return null;
+        }
+        value = toStoreValue(valueWrapper.get());
+        localCache.put(localKey, value);
+
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+
+        String localKey = String.valueOf(key);
+
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            return (T) fromStoreValue(value);
+        }
+
+        //同一个key已有线程在加载时等待其结果
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadingMap.putIfAbsent(localKey, future);
+        if (loading != null) {
+            return (T) fromStoreValue(join(loading));
+        }
+
+        try {
+            value = load(key, valueLoader, future);
+            //加载期间key被清除时不回填本地缓存，加载结果为null时不缓存，避免数据之后被创建时仍返回null
+            if (loadingMap.remove(localKey, future) && value != NullValue.INSTANCE) {
+                localCache.put(localKey, value);
+            }
+            future.complete(value);
+        } catch (Throwable e) {
+            loadingMap.remove(localKey, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        localCache.put(String.valueOf(key), toStoreValue(value));
+        publish(String.valueOf(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        loadingMap.remove(String.valueOf(key));
+        localCache.invalidate(String.valueOf(key));
+        publish(String.valueOf(key));
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        loadingMap.clear();
+        localCache.invalidateAll();
+        publish(null);
+    }
+
+    /**
+     * 收到失效通知后只清除本地缓存
+     * @param key 为null时清除全部
+     */
+    public void evictLocal(String key) {
+        if (key == null) {
+            loadingMap.clear();
+            localCache.invalidateAll();
+        } else {
+            loadingMap.remove(key);
+            localCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 等待其他线程加载完成
+     * @param loading
+     * @return
+     */
+    private Object join(CompletableFuture<Object> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 本地缓存未命中时加载数据：先查redis，仍未命中时通过redis租约锁保证多个节点只有一个去查询数据库，
+     * 其他节点等待redis中出现新加载的数据，等待超时后再自行加载
+     * @param key
+     * @param valueLoader
+     * @param future 本次加载在loadingMap中的登记，加载期间key被清除时会被移除
+     * @return
+     */
+    private <T> Object load(Object key, Callable<T> valueLoader, CompletableFuture<Object> future) {
+
+        ValueWrapper valueWrapper = redisCache.get(key);
+        if (valueWrapper != null) {
+            return toStoreValue(valueWrapper.get());
+        }
+
+        String lockKey = LOCK_KEY_PREFIX + name + ":" + key;
+        String token = UUID.randomUUID().toString();
+        long lockTtl = localCacheProperties.getLoadLockTtl();
+
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, Duration.ofMillis(lockTtl));
+        if (Boolean.TRUE.equals(locked)) {
+            try {
+                return loadAndPut(key, valueLoader, future);
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+            }
+        }
+
+        //其他节点正在加载，等待其写入redis
+        long deadline = System.currentTimeMillis() + lockTtl;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(localCacheProperties.getLoadWaitInterval());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            valueWrapper = redisCache.get(key);
+            if (valueWrapper != null) {
+                return toStoreValue(valueWrapper.get());
+            }
+        }
+
+        return loadAndPut(key, valueLoader, future);
+    }
+
+    /**
+     * 调用加载方法并写入redis
+     * 加载期间key被清除时，加载到的可能是清除前的旧数据，不写入redis；
+     * 写入后再检查一次，写入与清除交错时删除刚写入的数据，避免旧数据在redis中保留到过期
+     * @param key
+     * @param valueLoader
+     * @param future
+     * @return
+     */
+    private <T> Object loadAndPut(Object key, Callable<T> valueLoader, CompletableFuture<Object> future) {
+
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        String localKey = String.valueOf(key);
+        if (loaded != null && loadingMap.get(localKey) == future) {
+            redisCache.put(key, loaded);
+            if (loadingMap.get(localKey) != future) {
+                redisCache.evict(key);
+            }
+        }
+
+        return toStoreValue(loaded);
+    }
+
+    /**
+     * 通知其他节点清除本地缓存，消息格式：节点标识 缓存名:key，清除全部时为：节点标识 缓存名
+     * @param key
+     */
+    private void publish(String key) {
+        String message = nodeId + " " + (key == null ? name : name + ":" + key);
+        stringRedisTemplate.convertAndSend(localCacheProperties.getEvictChannel(), message);
+    }
+}
@@ -0,0 +1,89 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.LocalCacheProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二级缓存管理器，按缓存名称创建本地缓存，并包装redis缓存管理器中的同名缓存
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final Map<String, TwoLevelCache> cacheMap = new ConcurrentHashMap<>();
+
+    //本节点标识，用于忽略本节点自己发出的失效通知
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final CacheManager redisCacheManager;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final LocalCacheProperties localCacheProperties;
+
+    public TwoLevelCacheManager(CacheManager redisCacheManager,
+                                StringRedisTemplate stringRedisTemplate,
+                                LocalCacheProperties localCacheProperties) {
+        this.redisCacheManager = redisCacheManager;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.localCacheProperties = localCacheProperties;
+    }
+
+    @Override
+    public TwoLevelCache getCache(String name) {
+        return cacheMap.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(cacheMap.keySet());
+    }
+
+    /**
+     * 处理其他节点发出的失效通知
+     * @param message 节点标识 缓存名:key，或 节点标识 缓存名
+     */
+    public void onEvictMessage(String message) {
+
+        int separator = message.indexOf(' ');
+        if (separator < 0) {
+            return;
+        }
+
+        //本节点发出的通知在写入或删除时已处理过本地缓存
+        if (nodeId.equals(message.substring(0, separator))) {
+            return;
+        }
+        message = message.substring(separator + 1);
+
+        int index = message.indexOf(':');
+        String name = index < 0 ? message : message.substring(0, index);
+        String key = index < 0 ? null : message.substring(index + 1);
+
+        //本节点还未创建的缓存无需处理
+        TwoLevelCache cache = cacheMap.get(name);
+        if (cache != null) {
+            cache.evictLocal(key);
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+
+        Cache redisCache = redisCacheManager.getCache(name);
+
+        com.github.benmanes.caffeine.cache.Cache<String, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(localCacheProperties.getLocalMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(localCacheProperties.getLocalTtl()))
+                .build();
+
+        return new TwoLevelCache(name, nodeId, localCache, redisCache, stringRedisTemplate, localCacheProperties);
+    }
+}
@@ -0,0 +1,46 @@
+package com.sky.cart;
+
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * 购物车存储的公共逻辑
+ */
+public abstract class AbstractShoppingCartStore implements ShoppingCartStore {
+
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+
+    /**
+     * 首次加入购物车时，根据菜品或套餐设置名称、图片、金额
+     * @param shoppingCart
+     */
+    protected void fillItem(ShoppingCart shoppingCart) {
+
+        if (shoppingCart.getSetmealId() != null) {
+            //加入购物车的是套餐
+            Setmeal setmeal = productSnapshotCache.getSetmeal(shoppingCart.getSetmealId());
+            if (setmeal == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_FOUND);
+            }
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
+        } else {
+            //加入购物车的是菜品
+            Dish dish = productSnapshotCache.getDish(shoppingCart.getDishId());
+            if (dish == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_FOUND);
+            }
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.sky.cart;
+
+import com.sky.dto.ShoppingCartOperationDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 购物车数据保存在mysql的shopping_cart表中，需要先执行sql/shopping_cart_unique.sql添加唯一索引
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "store", havingValue = "mysql")
+public class MysqlShoppingCartStore extends AbstractShoppingCartStore {
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    /**
+     * 查询用户购物车中的全部商品
+     * @param userId
+     * @return
+     */
+    @Override
+    public List<ShoppingCart> list(Long userId) {
+
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .userId(userId)
+                .build();
+
+        return shoppingCartMapper.list(shoppingCart);
+    }
+
+    /**
+     * 将商品加入购物车，已存在时累加数量
+     * @param shoppingCart
+     */
+    @Override
+    public void add(ShoppingCart shoppingCart) {
+
+        //依赖(user_id, item_key)唯一索引，不存在时插入，已存在时原子累加数量
+        shoppingCartMapper.insertOrIncrease(shoppingCart);
+    }
+
+    /**
+     * 批量将商品加入购物车
+     * @param shoppingCartList
+     */
+    @Override
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+
+        if (shoppingCartList == null || shoppingCartList.isEmpty()) {
+            return;
+        }
+
+        shoppingCartMapper.insertBatch(shoppingCartList);
+    }
+
+    /**
+     * 删除购物车中的一个商品
+     * @param shoppingCart
+     */
+    @Override
+    public void deleteOne(ShoppingCart shoppingCart) {
+        shoppingCartMapper.deleteOne(shoppingCart);
+    }
+
+    /**
+     * 批量修改用户购物车，按操作类型分组，每种操作一条sql
+     * @param userId
+     * @param operations
+     */
+    @Override
+    public void batch(Long userId, List<ShoppingCartOperationDTO> operations) {
+
+        List<ShoppingCart> increaseList = new ArrayList<>();
+        List<ShoppingCart> setList = new ArrayList<>();
+        List<ShoppingCart> removeList = new ArrayList<>();
+
+        for (ShoppingCartOperationDTO operation : operations) {
+            ShoppingCart shoppingCart = ShoppingCart.builder()
+                    .userId(userId)
+                    .dishId(operation.getDishId())
+                    .setmealId(operation.getSetmealId())
+                    .dishFlavor(operation.getDishFlavor())
+                    .number(operation.getNumber())
+                    .build();
+
+            if (ShoppingCartOperationDTO.ADD.equals(operation.getType())) {
+                increaseList.add(shoppingCart);
+            } else if (ShoppingCartOperationDTO.SET.equals(operation.getType())) {
+                setList.add(shoppingCart);
+            } else {
+                removeList.add(shoppingCart);
+            }
+        }
+
+        if (!removeList.isEmpty()) {
+            shoppingCartMapper.deleteBatch(userId, removeList);
+        }
+        if (!increaseList.isEmpty()) {
+            shoppingCartMapper.insertOrIncreaseBatch(increaseList);
+        }
+        if (!setList.isEmpty()) {
+            shoppingCartMapper.insertOrUpdateNumberBatch(setList);
+        }
+    }
+
+    /**
+     * 清空用户购物车
+     * @param userId
+     */
+    @Override
+    public void clean(Long userId) {
+        shoppingCartMapper.deleteByUserId(userId);
+    }
+
+}
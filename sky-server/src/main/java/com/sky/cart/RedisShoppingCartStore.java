@@ -0,0 +1,295 @@
+package com.sky.cart;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.dto.ShoppingCartOperationDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.properties.CartProperties;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 购物车数据保存在redis中，每个用户的购物车为一个hash：
+ * number:商品key -> 数量，通过HINCRBY原子累加
+ * item:商品key -> 商品的名称、图片、金额等信息（json）
+ * 商品key为 dish:菜品id:口味 或 setmeal:套餐id
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "store", havingValue = "redis", matchIfMissing = true)
+public class RedisShoppingCartStore extends AbstractShoppingCartStore {
+
+    private static final String KEY_PREFIX = "shopping_cart:";
+
+    private static final String NUMBER_PREFIX = "number:";
+
+    private static final String ITEM_PREFIX = "item:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CartProperties cartProperties;
+
+    /**
+     * 查询用户购物车中的全部商品
+     * @param userId
+     * @return
+     */
+    @Override
+    public List<ShoppingCart> list(Long userId) {
+
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        Map<String, String> entries = hashOperations.entries(getKey(userId));
+
+        List<ShoppingCart> shoppingCartList = new ArrayList<>();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!entry.getKey().startsWith(NUMBER_PREFIX)) {
+                continue;
+            }
+
+            String itemKey = entry.getKey().substring(NUMBER_PREFIX.length());
+            String item = entries.get(ITEM_PREFIX + itemKey);
+
+            ShoppingCart shoppingCart;
+            if (item != null) {
+                shoppingCart = JSON.parseObject(item, ShoppingCart.class);
+            } else {
+                //数量已经写入，商品信息还未写入，直接查询商品信息
+                shoppingCart = parseItemKey(itemKey);
+                fillItem(shoppingCart);
+            }
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(Integer.valueOf(entry.getValue()));
+
+            shoppingCartList.add(shoppingCart);
+        }
+
+        //按加入购物车的时间排序
+        shoppingCartList.sort(Comparator.comparing(ShoppingCart::getCreateTime,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+
+        return shoppingCartList;
+    }
+
+    /**
+     * 将商品加入购物车，已存在时累加数量
+     * @param shoppingCart
+     */
+    @Override
+    public void add(ShoppingCart shoppingCart) {
+
+        increase(shoppingCart);
+
+        expire(shoppingCart.getUserId());
+    }
+
+    /**
+     * 批量将商品加入购物车
+     * @param shoppingCartList
+     */
+    @Override
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+
+        if (shoppingCartList == null || shoppingCartList.isEmpty()) {
+            return;
+        }
+
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            increase(shoppingCart);
+        }
+
+        expire(shoppingCartList.get(0).getUserId());
+    }
+
+    /**
+     * 删除购物车中的一个商品
+     * @param shoppingCart
+     */
+    @Override
+    public void deleteOne(ShoppingCart shoppingCart) {
+
+        String itemKey = getItemKey(shoppingCart);
+        stringRedisTemplate.opsForHash().delete(getKey(shoppingCart.getUserId()),
+                NUMBER_PREFIX + itemKey, ITEM_PREFIX + itemKey);
+    }
+
+    /**
+     * 批量修改用户购物车，先查询哪些商品还没有商品信息，再通过管道一次提交全部修改
+     * @param userId
+     * @param operations
+     */
+    @Override
+    public void batch(Long userId, List<ShoppingCartOperationDTO> operations) {
+
+        String key = getKey(userId);
+
+        //1.只为购物车中还没有的商品查询菜品或套餐信息
+        List<ShoppingCart> upsertList = new ArrayList<>();
+        for (ShoppingCartOperationDTO operation : operations) {
+            if (!ShoppingCartOperationDTO.REMOVE.equals(operation.getType())) {
+                ShoppingCart shoppingCart = new ShoppingCart();
+                BeanUtils.copyProperties(operation, shoppingCart);
+                upsertList.add(shoppingCart);
+            }
+        }
+
+        Map<String, String> newItemMap = new HashMap<>();
+        if (!upsertList.isEmpty()) {
+            List<String> itemFields = upsertList.stream()
+                    .map(shoppingCart -> ITEM_PREFIX + getItemKey(shoppingCart))
+                    .collect(Collectors.toList());
+            HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+            List<String> items = hashOperations.multiGet(key, itemFields);
+
+            for (int i = 0; i < upsertList.size(); i++) {
+                if (items.get(i) == null) {
+                    ShoppingCart shoppingCart = upsertList.get(i);
+                    fillItem(shoppingCart);
+                    newItemMap.put(itemFields.get(i), toItemJson(shoppingCart));
+                }
+            }
+        }
+
+        //2.通过管道一次提交全部修改
+        long ttl = TimeUnit.MINUTES.toSeconds(cartProperties.getTtl());
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+
+            for (ShoppingCartOperationDTO operation : operations) {
+                ShoppingCart shoppingCart = new ShoppingCart();
+                BeanUtils.copyProperties(operation, shoppingCart);
+                String itemKey = getItemKey(shoppingCart);
+
+                if (ShoppingCartOperationDTO.ADD.equals(operation.getType())) {
+                    stringRedisConnection.hIncrBy(key, NUMBER_PREFIX + itemKey, operation.getNumber());
+                } else if (ShoppingCartOperationDTO.SET.equals(operation.getType())) {
+                    stringRedisConnection.hSet(key, NUMBER_PREFIX + itemKey, String.valueOf(operation.getNumber()));
+                } else {
+                    stringRedisConnection.hDel(key, NUMBER_PREFIX + itemKey, ITEM_PREFIX + itemKey);
+                }
+            }
+
+            newItemMap.forEach((field, item) -> stringRedisConnection.hSetNX(key, field, item));
+            stringRedisConnection.expire(key, ttl);
+
+            return null;
+        });
+    }
+
+    /**
+     * 清空用户购物车
+     * @param userId
+     */
+    @Override
+    public void clean(Long userId) {
+        stringRedisTemplate.delete(getKey(userId));
+    }
+
+    /**
+     * 原子累加商品数量，商品首次加入时先写入商品信息
+     * 与批量修改一样先查询商品信息再累加数量，商品不存在时直接失败，不会留下没有商品信息的数量
+     * @param shoppingCart
+     */
+    private void increase(ShoppingCart shoppingCart) {
+
+        String key = getKey(shoppingCart.getUserId());
+        String itemKey = getItemKey(shoppingCart);
+        int number = shoppingCart.getNumber() == null ? 1 : shoppingCart.getNumber();
+
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+
+        //购物车中还没有商品信息，说明是首次加入
+        if (!hashOperations.hasKey(key, ITEM_PREFIX + itemKey)) {
+            if (shoppingCart.getName() == null) {
+                fillItem(shoppingCart);
+            }
+
+            hashOperations.putIfAbsent(key, ITEM_PREFIX + itemKey, toItemJson(shoppingCart));
+        }
+
+        hashOperations.increment(key, NUMBER_PREFIX + itemKey, number);
+    }
+
+    /**
+     * 生成保存在购物车中的商品信息
+     * @param shoppingCart
+     * @return
+     */
+    private String toItemJson(ShoppingCart shoppingCart) {
+
+        ShoppingCart item = ShoppingCart.builder()
+                .dishId(shoppingCart.getDishId())
+                .setmealId(shoppingCart.getSetmealId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .name(shoppingCart.getName())
+                .image(shoppingCart.getImage())
+                .amount(shoppingCart.getAmount())
+                .createTime(LocalDateTime.now())
+                .build();
+
+        return JSON.toJSONString(item);
+    }
+
+    /**
+     * 每次修改购物车后重新设置过期时间
+     * @param userId
+     */
+    private void expire(Long userId) {
+        stringRedisTemplate.expire(getKey(userId), cartProperties.getTtl(), TimeUnit.MINUTES);
+    }
+
+    private String getKey(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    /**
+     * 获取商品key，菜品：dish:菜品id:口味，套餐：setmeal:套餐id
+     * @param shoppingCart
+     * @return
+     */
+    private String getItemKey(ShoppingCart shoppingCart) {
+
+        if (shoppingCart.getSetmealId() != null) {
+            return "setmeal:" + shoppingCart.getSetmealId();
+        }
+
+        String dishFlavor = shoppingCart.getDishFlavor() == null ? "" : shoppingCart.getDishFlavor();
+        return "dish:" + shoppingCart.getDishId() + ":" + dishFlavor;
+    }
+
+    /**
+     * 根据商品key还原菜品id、口味或套餐id
+     * @param itemKey
+     * @return
+     */
+    private ShoppingCart parseItemKey(String itemKey) {
+
+        ShoppingCart shoppingCart = new ShoppingCart();
+
+        if (itemKey.startsWith("setmeal:")) {
+            shoppingCart.setSetmealId(Long.valueOf(itemKey.substring("setmeal:".length())));
+            return shoppingCart;
+        }
+
+        //口味中可能包含冒号，只按第一个冒号拆分
+        String[] parts = itemKey.substring("dish:".length()).split(":", 2);
+        shoppingCart.setDishId(Long.valueOf(parts[0]));
+        shoppingCart.setDishFlavor(parts[1].isEmpty() ? null : parts[1]);
+        return shoppingCart;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.sky.cart;
+
+import com.sky.dto.ShoppingCartOperationDTO;
+import com.sky.entity.ShoppingCart;
+
+import java.util.List;
+
+/**
+ * 购物车存储，具体实现由sky.cart.store指定
+ */
+public interface ShoppingCartStore {
+
+    /**
+     * 查询用户购物车中的全部商品
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 将商品加入购物车，已存在时累加数量
+     * 需要设置userId、dishId或setmealId、dishFlavor，number为本次增加的数量
+     * @param shoppingCart
+     */
+    void add(ShoppingCart shoppingCart);
+
+    /**
+     * 批量将商品加入购物车，商品的名称、图片、金额已经设置好
+     * @param shoppingCartList
+     */
+    void addBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 删除购物车中的一个商品
+     * @param shoppingCart
+     */
+    void deleteOne(ShoppingCart shoppingCart);
+
+    /**
+     * 批量修改用户购物车，每个商品最多对应一个操作
+     * @param userId
+     * @param operations
+     */
+    void batch(Long userId, List<ShoppingCartOperationDTO> operations);
+
+    /**
+     * 清空用户购物车
+     * @param userId
+     */
+    void clean(Long userId);
+
+}
@@ -0,0 +1,63 @@
+package com.sky.config;
+
+import com.sky.cache.KeyRegistryRedisCacheWriter;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.LocalCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * 配置类，注册本地缓存 + redis缓存的二级缓存管理器
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             RedisMessageListenerContainer redisMessageListenerContainer,
+                                             LocalCacheProperties localCacheProperties,
+                                             RedisSerializer<Object> redisValueSerializer) {
+
+        log.info("开始创建二级缓存管理器: {}", localCacheProperties);
+
+        //清空缓存时只删除登记过的key，不使用KEYS命令
+        RedisCacheWriter redisCacheWriter = new KeyRegistryRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory), redisConnectionFactory);
+
+        //缓存值与redis模板使用同一个序列化器，并设置过期时间
+        RedisCacheConfiguration redisCacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofSeconds(localCacheProperties.getRedisTtl()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer));
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisCacheWriter)
+                .cacheDefaults(redisCacheConfiguration)
+                .build();
+        redisCacheManager.initializeCaches();
+
+        TwoLevelCacheManager cacheManager =
+                new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate, localCacheProperties);
+
+        //订阅缓存失效通知，清除本节点的本地缓存
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> cacheManager.onEvictMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(localCacheProperties.getEvictChannel()));
+
+        return cacheManager;
+    }
+
+}
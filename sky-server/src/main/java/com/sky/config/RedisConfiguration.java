@@ -1,19 +1,61 @@
 package com.sky.config;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.sky.cache.JacksonRedisSerializer;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.properties.RedisSerializerProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 @Slf4j
 public class RedisConfiguration {
 
+    /**
+     * redis value的序列化器，redis模板和缓存管理器共用
+     * 基于jackson序列化，日期格式与接口返回保持一致，具体格式由sky.redis.value-format指定
+     */
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisSerializer<Object> redisValueSerializer(RedisSerializerProperties redisSerializerProperties) {
+
+        log.info("开始创建redis value序列化器，格式: {}", redisSerializerProperties.getValueFormat());
+
+        //smile为二进制json，重复的属性名和短字符串只写一次，体积比jdk序列化和文本json都小
+        JsonFactory jsonFactory = "json".equals(redisSerializerProperties.getValueFormat())
+                ? null
+                : SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build();
+
+        ObjectMapper objectMapper = new JacksonObjectMapper(jsonFactory);
+
+        //值为null的属性不写入redis，减小数据体积
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+        //只对Object及接口、抽象类型记录类名，例如List<DishVO>中的元素仍还原为DishVO
+        objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(),
+                ObjectMapper.DefaultTyping.OBJECT_AND_NON_CONCRETE, JsonTypeInfo.As.PROPERTY);
+
+        //支持缓存空值
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(objectMapper, null);
+
+        return new JacksonRedisSerializer(objectMapper);
+    }
+
+    @Bean
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                       RedisSerializer<Object> redisValueSerializer) {
 
         log.info("开始创建redis模板对象");
 
@@ -24,8 +66,25 @@ public class RedisConfiguration {
 
         //设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+
+        //设置redis value的序列化器
+        redisTemplate.setValueSerializer(redisValueSerializer);
+        redisTemplate.setHashValueSerializer(redisValueSerializer);
 
         return redisTemplate;
     }
 
+    /**
+     * redis消息监听容器，用于订阅各类广播通知
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+
+        return container;
+    }
+
 }
@@ -11,9 +11,14 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -27,7 +32,7 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private CacheManager cacheManager;
 
     /**
      * 新增菜品
@@ -36,16 +41,13 @@ public class DishController {
      */
     @PostMapping
     @ApiOperation("新增菜品")
+    @CacheEvict(cacheNames = "dishCache", key = "#dishDTO.categoryId")
     public Result save(@RequestBody DishDTO dishDTO) {
 
         log.info("新增菜品: {}", dishDTO);
 
         dishService.saveWithFlavor(dishDTO);
 
-        //清除缓存数据
-        String key = "dish_" + dishDTO.getCategoryId();
-        cleanCache(key);
-
         return Result.success();
     }
 
@@ -78,10 +80,13 @@ public class DishController {
 
         log.info("菜品批量删除: {}", ids);
 
+        //删除前查询菜品所属的分类
+        List<Long> categoryIds = dishService.getCategoryIdsByIds(ids);
+
         dishService.deleteBatch(ids);
 
-        //清除缓存数据, 删除所有dish_开头的key
-        cleanCache("dish_*");
+        //只清除受影响分类的缓存数据
+        cleanCache(categoryIds);
 
         return Result.success();
     }
@@ -114,10 +119,16 @@ public class DishController {
 
         log.info("修改菜品: {}", dishDTO);
 
+        //修改前查询菜品原来所属的分类，菜品可能被移动到新分类
+        Set<Long> categoryIds = new HashSet<>(dishService.getCategoryIdsByIds(Collections.singletonList(dishDTO.getId())));
+        if (dishDTO.getCategoryId() != null) {
+            categoryIds.add(dishDTO.getCategoryId());
+        }
+
         dishService.updateWithFlavor(dishDTO);
 
-        //清除缓存数据, 删除所有dish_开头的key
-        cleanCache("dish_*");
+        //清除原分类和新分类的缓存数据
+        cleanCache(categoryIds);
 
         return Result.success();
     }
@@ -137,8 +148,8 @@ public class DishController {
 
         dishService.startOrStop(status, id);
 
-        //清除缓存数据, 删除所有dish_开头的key
-        cleanCache("dish_*");
+        //清除菜品所属分类的缓存数据
+        cleanCache(dishService.getCategoryIdsByIds(Collections.singletonList(id)));
 
         return Result.success();
     }
@@ -162,14 +173,16 @@ public class DishController {
 
 
     /**
-     * 清理缓存数据
-     * @param pattern
+     * 清理指定分类的菜品缓存数据
+     * @param categoryIds
      */
-    private void cleanCache(String pattern) {
+    private void cleanCache(Collection<Long> categoryIds) {
 
-        Set keys = redisTemplate.keys(pattern);
+        Cache dishCache = cacheManager.getCache("dishCache");
 
-        redisTemplate.delete(keys);
+        for (Long categoryId : categoryIds) {
+            dishCache.evict(categoryId);
+        }
 
     }
 
@@ -1,8 +1,10 @@
 package com.sky.controller.admin;
 
 import com.sky.result.Result;
+import com.sky.service.ReportExportService;
 import com.sky.service.ReportService;
 import com.sky.vo.OrderReportVO;
+import com.sky.vo.ReportExportJobVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
@@ -11,10 +13,7 @@ import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
@@ -28,6 +27,9 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private ReportExportService reportExportService;
+
     /**
      * 营业额统计
      *
@@ -113,14 +115,89 @@ public class ReportController {
 
 
     /**
-     * 导出Excel报表
+     * 导出Excel报表，未指定日期区间时默认导出最近30天
      *
+     * @param begin
+     * @param end
      * @param response
      */
     @GetMapping("/export")
     @ApiOperation("导出Excel报表")
-    public void export(HttpServletResponse response) {
-        reportService.exportBusinessDate(response);
+    public void export(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+            HttpServletResponse response) {
+
+        if (end == null) {
+            end = LocalDate.now().minusDays(1);
+        }
+        if (begin == null) {
+            begin = end.minusDays(29);
+        }
+
+        log.info("导出Excel报表: {}, {}", begin, end);
+
+        reportService.exportBusinessDate(begin, end, response);
+    }
+
+
+    /**
+     * 提交异步导出Excel报表任务，未指定日期区间时默认导出最近30天
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    @PostMapping("/export/job")
+    @ApiOperation("提交导出Excel报表任务")
+    public Result<ReportExportJobVO> submitExportJob(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end) {
+
+        if (end == null) {
+            end = LocalDate.now().minusDays(1);
+        }
+        if (begin == null) {
+            begin = end.minusDays(29);
+        }
+
+        log.info("提交导出Excel报表任务: {}, {}", begin, end);
+
+        ReportExportJobVO reportExportJobVO = reportExportService.submit(begin, end);
+
+        return Result.success(reportExportJobVO);
+    }
+
+
+    /**
+     * 查询导出Excel报表任务状态
+     *
+     * @param jobId
+     * @return
+     */
+    @GetMapping("/export/job/{jobId}")
+    @ApiOperation("查询导出Excel报表任务状态")
+    public Result<ReportExportJobVO> getExportJob(@PathVariable String jobId) {
+
+        ReportExportJobVO reportExportJobVO = reportExportService.getJob(jobId);
+
+        return Result.success(reportExportJobVO);
+    }
+
+
+    /**
+     * 下载导出完成的Excel报表
+     *
+     * @param jobId
+     * @param response
+     */
+    @GetMapping("/export/job/{jobId}/download")
+    @ApiOperation("下载导出完成的Excel报表")
+    public void downloadExportJob(@PathVariable String jobId, HttpServletResponse response) {
+
+        log.info("下载导出完成的Excel报表: {}", jobId);
+
+        reportExportService.download(jobId, response);
     }
 
 }
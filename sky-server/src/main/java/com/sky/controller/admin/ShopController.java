@@ -1,12 +1,11 @@
 package com.sky.controller.admin;
 
 import com.sky.result.Result;
+import com.sky.service.ShopService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.web.bind.annotation.*;
 
 @RestController("adminShopController")
@@ -15,10 +14,8 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class ShopController {
 
-    public static final String KEY = "SHOP_STATUS";
-
     @Autowired
-    private RedisTemplate redisTemplate;
+    private ShopService shopService;
 
     /**
      * 设置店铺营业状态
@@ -31,8 +28,7 @@ public class ShopController {
 
         log.info("设置店铺营业状态为: {}", status == 1? "营业中": "打烊中");
 
-        ValueOperations valueOperations = redisTemplate.opsForValue();
-        valueOperations.set(KEY, status);
+        shopService.setStatus(status);
 
         return Result.success();
     }
@@ -46,7 +42,7 @@ public class ShopController {
     @ApiOperation("获取店铺营业状态")
     public Result<Integer> getStatus() {
 
-        Integer status = (Integer) redisTemplate.opsForValue().get(KEY);
+        Integer status = shopService.getStatus();
 
         log.info("获取店铺营业状态为: {}", status == 1? "营业中": "打烊中");
 
@@ -3,6 +3,7 @@ package com.sky.controller.notify;
 import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.order.PayNotifyDeduplicator;
 import com.sky.properties.WeChatProperties;
 import com.sky.service.OrderService;
 import com.sky.websocket.WebSocketServer;
@@ -29,6 +30,8 @@ public class PayNotifyController {
     private OrderService orderService;
     @Autowired
     private WeChatProperties weChatProperties;
+    @Autowired
+    private PayNotifyDeduplicator payNotifyDeduplicator;
 
     /**
      * 支付成功回调
@@ -52,8 +55,16 @@ public class PayNotifyController {
         log.info("商户平台订单号：{}", outTradeNo);
         log.info("微信支付交易号：{}", transactionId);
 
+        //重复回调直接应答
+        if (payNotifyDeduplicator.isProcessed(transactionId)) {
+            log.info("支付回调已处理过，直接应答：{}", transactionId);
+            responseToWeixin(response);
+            return;
+        }
+
         //业务处理，修改订单状态、来单提醒
         orderService.paySuccess(outTradeNo);
+        payNotifyDeduplicator.markProcessed(transactionId);
 
         //给微信响应
         responseToWeixin(response);
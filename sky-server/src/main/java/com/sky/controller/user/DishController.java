@@ -8,7 +8,7 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -21,9 +21,6 @@ import java.util.List;
 @Slf4j
 public class DishController {
 
-    @Autowired
-    private RedisTemplate redisTemplate;
-
     @Autowired
     private DishService dishService;
 
@@ -34,25 +31,12 @@ public class DishController {
      */
     @GetMapping("/list")
     @ApiOperation("根据分类id查询菜品")
+    @Cacheable(cacheNames = "dishCache", key = "#categoryId", sync = true)
     public Result<List<DishVO>> list(Integer categoryId) {
 
-        //构造redis中的key，规则：dish_分类id
-        String key = "dish_" + categoryId;
-
-        //查询redis中是否存在菜品数据(是否有缓存)
-        List<DishVO> dishVOList = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        if (dishVOList != null && dishVOList.size() > 0) {
-            //存在直接返回, 无需查询数据库
-            return Result.success(dishVOList);
-        }
-
-        //不存在则查询数据库，再放入redis中缓存
-
         log.info("根据分类id查询菜品: {}", categoryId);
 
-        dishVOList = dishService.listWithFlavors(categoryId);
-
-        redisTemplate.opsForValue().set(key, dishVOList);   //缓存
+        List<DishVO> dishVOList = dishService.listWithFlavors(categoryId);
 
         return Result.success(dishVOList);
     }
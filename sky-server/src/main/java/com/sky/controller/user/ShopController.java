@@ -1,12 +1,12 @@
 package com.sky.controller.user;
 
+import com.sky.constant.StatusConstant;
 import com.sky.result.Result;
+import com.sky.service.ShopService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.web.bind.annotation.*;
 
 @RestController("userShopController")
@@ -15,10 +15,8 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class ShopController {
 
-    public static final String KEY = "SHOP_STATUS";
-
     @Autowired
-    private RedisTemplate redisTemplate;
+    private ShopService shopService;
 
     /**
      * 获取店铺营业状态
@@ -28,9 +26,9 @@ public class ShopController {
     @ApiOperation("获取店铺营业状态")
     public Result<Integer> getStatus() {
 
-        Integer status = (Integer) redisTemplate.opsForValue().get(KEY);
+        Integer status = shopService.getStatus();
 
-        log.info("获取店铺营业状态为: {}", status == 1? "营业中": "打烊中");
+        log.debug("获取店铺营业状态为: {}", StatusConstant.ENABLE.equals(status)? "营业中": "打烊中");
 
         return Result.success(status);
     }
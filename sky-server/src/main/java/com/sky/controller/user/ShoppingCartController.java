@@ -1,6 +1,7 @@
 package com.sky.controller.user;
 
 import com.sky.dto.ShoppingCartDTO;
+import com.sky.dto.ShoppingCartOperationDTO;
 import com.sky.entity.ShoppingCart;
 import com.sky.result.Result;
 import com.sky.service.ShoppingCartService;
@@ -88,4 +89,21 @@ public class ShoppingCartController {
     }
 
 
+    /**
+     * 批量修改购物车，客户端可以合并多次点击后一次提交
+     * @param operations
+     * @return
+     */
+    @PostMapping("/batch")
+    @ApiOperation("批量修改购物车")
+    public Result batch(@RequestBody List<ShoppingCartOperationDTO> operations) {
+
+        log.info("批量修改购物车: {}", operations);
+
+        shoppingCartService.batch(operations);
+
+        return Result.success();
+    }
+
+
 }
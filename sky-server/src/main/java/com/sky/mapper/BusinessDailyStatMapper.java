@@ -0,0 +1,60 @@
+package com.sky.mapper;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.entity.BusinessDailyStat;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface BusinessDailyStatMapper {
+
+    /**
+     * 在当天汇总数据上累加增量，不存在则插入
+     * @param businessDailyStat
+     */
+    void increase(BusinessDailyStat businessDailyStat);
+
+    /**
+     * 批量覆盖写入汇总数据
+     * @param businessDailyStatList
+     */
+    void replaceBatch(List<BusinessDailyStat> businessDailyStatList);
+
+    /**
+     * 锁定指定日期区间内的汇总数据，包括区间内尚不存在的日期
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select stat_date from business_daily_stat where stat_date between #{begin} and #{end} for update")
+    List<LocalDate> lockByDate(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询指定日期区间内的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select stat_date date, turnover, valid_order_count, total_order_count, new_users " +
+            "from business_daily_stat where stat_date between #{begin} and #{end}")
+    List<DailyStatisticsDTO> listByDate(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计指定日期之前的新增用户总数
+     * @param date
+     * @return
+     */
+    @Select("select ifnull(sum(new_users), 0) from business_daily_stat where stat_date < #{date}")
+    Integer sumNewUsersBefore(LocalDate date);
+
+    /**
+     * 统计指定日期之前的汇总数据条数
+     * @param date
+     * @return
+     */
+    @Select("select count(*) from business_daily_stat where stat_date < #{date}")
+    Integer countBefore(LocalDate date);
+}
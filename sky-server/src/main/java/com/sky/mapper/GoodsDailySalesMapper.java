@@ -0,0 +1,51 @@
+package com.sky.mapper;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.GoodsDailySales;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface GoodsDailySalesMapper {
+
+    /**
+     * 批量累加商品销量，不存在则插入
+     * @param goodsDailySalesList
+     */
+    void increaseBatch(List<GoodsDailySales> goodsDailySalesList);
+
+    /**
+     * 批量插入商品销量
+     * @param goodsDailySalesList
+     */
+    void insertBatch(List<GoodsDailySales> goodsDailySalesList);
+
+    /**
+     * 锁定指定日期区间内的商品销量，包括区间内尚不存在的日期
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select stat_date from goods_daily_sales where stat_date between #{begin} and #{end} for update")
+    List<LocalDate> lockByDate(LocalDate begin, LocalDate end);
+
+    /**
+     * 删除指定日期区间内的商品销量
+     * @param begin
+     * @param end
+     */
+    @Delete("delete from goods_daily_sales where stat_date between #{begin} and #{end}")
+    void deleteByDate(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计指定日期区间内的销量排名top10
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop10(LocalDate begin, LocalDate end);
+}
@@ -0,0 +1,79 @@
+package com.sky.mapper;
+
+import com.sky.entity.OrderEvent;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface OrderEventMapper {
+
+    /**
+     * 插入订单事件
+     * @param orderEvent
+     */
+    void insert(OrderEvent orderEvent);
+
+    /**
+     * 查询到达推送时间的待推送事件
+     * @param time
+     * @param limit
+     * @return
+     */
+    @Select("select * from order_event where status = 0 and next_retry_time <= #{time} order by id limit #{limit}")
+    List<OrderEvent> listPending(LocalDateTime time, int limit);
+
+    /**
+     * 查询推送序号区间内已推送的事件，不包含区间两端
+     * 已分配序号但尚未推送成功的事件不返回
+     * @param afterSeq
+     * @param beforeSeq
+     * @param limit
+     * @return
+     */
+    @Select("select * from order_event where status = 1 and sent_seq > #{afterSeq} and sent_seq < #{beforeSeq} " +
+            "order by sent_seq limit #{limit}")
+    List<OrderEvent> listSentBetween(Long afterSeq, Long beforeSeq, int limit);
+
+    /**
+     * 查询最大的推送序号，包括已分配但尚未推送成功的序号
+     * @return
+     */
+    @Select("select max(sent_seq) from order_event")
+    Long getMaxSentSeq();
+
+    /**
+     * 为还没有推送序号的待推送事件批量记录推送序号
+     * @param orderEventList
+     * @return 记录成功的事件数
+     */
+    Integer assignSentSeq(List<OrderEvent> orderEventList);
+
+    /**
+     * 将待推送事件批量标记为已推送
+     * @param ids
+     * @return
+     */
+    Integer markSent(List<Long> ids);
+
+    /**
+     * 推送失败的事件累加失败次数并推迟下次推送时间，失败次数达到上限后标记为推送失败
+     * @param ids
+     * @param nextRetryTime
+     * @param maxRetry
+     * @return
+     */
+    Integer markRetry(List<Long> ids, LocalDateTime nextRetryTime, int maxRetry);
+
+    /**
+     * 删除指定时间之前创建的已推送事件
+     * @param time
+     * @param limit
+     * @return
+     */
+    @Delete("delete from order_event where status = 1 and create_time < #{time} limit #{limit}")
+    Integer deleteSentBefore(LocalDateTime time, int limit);
+}
@@ -1,13 +1,16 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.GoodsDailySales;
 import com.sky.entity.Orders;
 import com.sky.vo.OrderVO;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -34,6 +37,29 @@ public interface OrderMapper {
      */
     void update(Orders orders);
 
+    /**
+     * 根据订单号修改订单状态、支付状态和结账时间，只修改仍处于fromStatus状态的订单
+     * @param orderNumber
+     * @param fromStatus 订单当前应处于的状态
+     * @param orders 目标状态、支付状态和结账时间
+     * @return 实际修改的订单数
+     */
+    @Update("update orders set status = #{orders.status}, pay_status = #{orders.payStatus}, " +
+            "checkout_time = #{orders.checkoutTime} where number = #{orderNumber} and status = #{fromStatus}")
+    Integer updatePayStatusByNumber(String orderNumber, Integer fromStatus, Orders orders);
+
+    /**
+     * 修改指定状态订单的支付状态，只修改支付状态仍为fromPayStatus的订单
+     * @param id
+     * @param status 订单当前应处于的状态
+     * @param fromPayStatus 订单当前应处于的支付状态
+     * @param toPayStatus 目标支付状态
+     * @return 实际修改的订单数
+     */
+    @Update("update orders set pay_status = #{toPayStatus} " +
+            "where id = #{id} and status = #{status} and pay_status = #{fromPayStatus}")
+    Integer updatePayStatusById(Long id, Integer status, Integer fromPayStatus, Integer toPayStatus);
+
     /**
      * 分页查询订单
      * @param ordersPageQueryDTO
@@ -95,4 +121,47 @@ public interface OrderMapper {
      * @return
      */
     List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按天分组统计指定区间内的营业额、有效订单数和订单总数
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyStatisticsDTO> sumGroupByDay(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按天分组统计指定区间内各商品的销量
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<GoodsDailySales> getSalesGroupByDay(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 查询指定状态且下单时间早于指定时间的订单，并锁定这些订单，每次最多查询limit个
+     * @param status
+     * @param orderTime
+     * @param limit
+     * @return
+     */
+    @Select("select * from orders where status = #{status} and order_time < #{orderTime} " +
+            "order by id limit #{limit} for update")
+    List<Orders> getByStatusAndOrderTimeLTForUpdate(Integer status, LocalDateTime orderTime, Integer limit);
+
+    /**
+     * 批量修改订单状态，只修改仍处于fromStatus状态的订单
+     * @param ids
+     * @param fromStatus 订单当前应处于的状态
+     * @param orders 目标状态及需要同时修改的取消原因、取消时间、送达时间
+     * @return 实际修改的订单数
+     */
+    Integer updateStatusByIds(List<Long> ids, Integer fromStatus, Orders orders);
+
+    /**
+     * 查询最早的下单时间
+     * @return
+     */
+    @Select("select min(order_time) from orders")
+    LocalDateTime getMinOrderTime();
 }
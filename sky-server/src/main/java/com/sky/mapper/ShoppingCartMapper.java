@@ -33,6 +33,13 @@ public interface ShoppingCartMapper {
             "VALUES (#{name}, #{image}, #{userId}, #{dishId}, #{setmealId}, #{dishFlavor}, #{amount}, #{createTime})")
     void insert(ShoppingCart shoppingCart);
 
+    /**
+     * 加入购物车，商品已存在时原子累加数量
+     * 名称、图片、金额直接从菜品或套餐表查询，一条sql完成
+     * @param shoppingCart
+     */
+    void insertOrIncrease(ShoppingCart shoppingCart);
+
     /**
      * 清空购物车
      * @param userId
@@ -47,8 +54,27 @@ public interface ShoppingCartMapper {
     void deleteOne(ShoppingCart shoppingCart);
 
     /**
-     * 批量插入购物车数据
+     * 批量插入购物车数据，商品已存在时累加数量
      * @param shoppingCartList
      */
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 批量加入购物车，商品已存在时累加数量
+     * @param shoppingCartList
+     */
+    void insertOrIncreaseBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 批量设置购物车商品数量，商品不存在时插入
+     * @param shoppingCartList
+     */
+    void insertOrUpdateNumberBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 批量删除购物车中的商品
+     * @param userId
+     * @param shoppingCartList
+     */
+    void deleteBatch(Long userId, List<ShoppingCart> shoppingCartList);
 }
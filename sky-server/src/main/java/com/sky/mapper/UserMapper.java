@@ -1,9 +1,12 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -37,4 +40,19 @@ public interface UserMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 按天分组统计指定区间内的新增用户数
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyStatisticsDTO> countGroupByDay(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 查询最早的用户注册时间
+     * @return
+     */
+    @Select("select min(create_time) from user")
+    LocalDateTime getMinCreateTime();
 }
@@ -0,0 +1,217 @@
+package com.sky.order;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.OrderEvent;
+import com.sky.mapper.OrderEventMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.websocket.NotificationBus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 订单事件发件箱
+ * 业务方法只在自己的事务中写入事件，由定时任务分批推送给管理端，推送失败时按间隔重试
+ * 推送前先由通知总线分配推送序号并记录到事件中，再按该序号广播，重新推送时沿用已记录的序号，管理端重连时按推送序号补发
+ * 通过redis锁保证同一时刻只有一个节点推送，锁过期等情况下重复推送的事件由通知总线按事件id去重
+ */
+@Component
+@Slf4j
+public class OrderEventOutbox {
+
+    //通知id前缀，通知id为前缀加事件id
+    private static final String NOTIFICATION_PREFIX = "order_event:";
+
+    //推送锁
+    private static final String LOCK_KEY = "order_event:dispatch_lock";
+
+    private static final Duration LOCK_TTL = Duration.ofSeconds(10);
+
+    //只释放自己持有的锁
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+
+    @Autowired
+    private NotificationBus notificationBus;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @PostConstruct
+    public void init() {
+
+        //推送序号从已记录的最大推送序号之后继续分配
+        Long maxSentSeq = orderEventMapper.getMaxSentSeq();
+        if (maxSentSeq != null) {
+            notificationBus.initSeq(maxSentSeq);
+        }
+    }
+
+    /**
+     * 写入订单事件，需要在订单修改所在的事务中调用
+     * @param orderId
+     * @param type
+     * @param content
+     */
+    public void add(Long orderId, Integer type, String content) {
+
+        LocalDateTime now = LocalDateTime.now();
+        OrderEvent orderEvent = OrderEvent.builder()
+                .orderId(orderId)
+                .type(type)
+                .content(content)
+                .status(OrderEvent.PENDING)
+                .retryCount(0)
+                .nextRetryTime(now)
+                .createTime(now)
+                .build();
+
+        orderEventMapper.insert(orderEvent);
+    }
+
+    /**
+     * 推送一批待推送的事件，其他节点正在推送时跳过
+     * @return 本批处理的事件数
+     */
+    public int dispatch() {
+
+        String token = UUID.randomUUID().toString();
+        Boolean locked;
+        try {
+            locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, LOCK_TTL);
+        } catch (Exception e) {
+            //redis不可用时不加锁推送，广播失败后由通知总线推送给本节点的客户端，并按间隔重试
+            log.warn("获取订单事件推送锁失败: {}", e.getMessage());
+            return doDispatch();
+        }
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+
+        try {
+            return doDispatch();
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(LOCK_KEY), token);
+        }
+    }
+
+    /**
+     * 推送一批待推送的事件
+     * @return 本批处理的事件数
+     */
+    private int doDispatch() {
+
+        List<OrderEvent> orderEventList = orderEventMapper.listPending(LocalDateTime.now(), orderProperties.getEventBatchSize());
+        if (orderEventList.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = orderEventList.stream().map(OrderEvent::getId).collect(Collectors.toList());
+
+        try {
+            //为还没有推送序号的事件分配序号，先记录到事件中再广播
+            List<OrderEvent> unassignedList = orderEventList.stream()
+                    .filter(orderEvent -> orderEvent.getSentSeq() == null)
+                    .collect(Collectors.toList());
+            if (!unassignedList.isEmpty()) {
+                long firstSeq = notificationBus.reserveSeq(unassignedList.size());
+                for (int i = 0; i < unassignedList.size(); i++) {
+                    unassignedList.get(i).setSentSeq(firstSeq + i);
+                }
+
+                //其他节点同时为部分事件分配了序号，重新查询后以记录的序号为准
+                Integer count = orderEventMapper.assignSentSeq(unassignedList);
+                if (count == null || count != unassignedList.size()) {
+                    log.warn("订单事件推送序号已被其他节点分配，重新查询: {}", ids);
+                    return orderEventList.size();
+                }
+            }
+        } catch (Exception e) {
+            //无法分配序号时先推送给本节点的客户端（不带序号），再按间隔重试
+            notificationBus.deliverLocal(toNotifications(orderEventList, false));
+            markRetry(ids, e);
+            return orderEventList.size();
+        }
+
+        try {
+            notificationBus.publishAll(toNotifications(orderEventList, true));
+        } catch (Exception e) {
+            markRetry(ids, e);
+            return orderEventList.size();
+        }
+
+        orderEventMapper.markSent(ids);
+
+        return orderEventList.size();
+    }
+
+    /**
+     * 推送失败的事件推迟到下次推送时间重试
+     * @param ids
+     * @param e
+     */
+    private void markRetry(List<Long> ids, Exception e) {
+        LocalDateTime nextRetryTime = LocalDateTime.now().plusSeconds(orderProperties.getEventRetryInterval());
+        orderEventMapper.markRetry(ids, nextRetryTime, orderProperties.getEventMaxRetry());
+        log.warn("推送订单事件失败，{}秒后重试: {}, {}", orderProperties.getEventRetryInterval(), ids, e.getMessage());
+    }
+
+    /**
+     * 生成事件对应的通知，通知id为前缀加事件id
+     * @param orderEventList
+     * @param withSeq 是否带上已记录的推送序号
+     * @return
+     */
+    private List<NotificationBus.Notification> toNotifications(List<OrderEvent> orderEventList, boolean withSeq) {
+        return orderEventList.stream()
+                .map(orderEvent -> new NotificationBus.Notification(NOTIFICATION_PREFIX + orderEvent.getId(),
+                        withSeq ? orderEvent.getSentSeq() : null, toMessage(orderEvent)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 删除超过保留天数的已推送事件
+     * @param limit 最多删除的事件数
+     * @return 删除的事件数
+     */
+    public int purge(int limit) {
+        LocalDateTime time = LocalDateTime.now().minusDays(orderProperties.getEventRetentionDays());
+        return orderEventMapper.deleteSentBefore(time, limit);
+    }
+
+    /**
+     * 生成推送给管理端的消息 json: type orderId content，推送序号seq由通知总线加入
+     * @param orderEvent
+     * @return
+     */
+    public static String toMessage(OrderEvent orderEvent) {
+
+        Map map = new HashMap();
+        map.put("type", orderEvent.getType());     //1-来单提醒 2-客户催单
+        map.put("orderId", orderEvent.getOrderId());
+        map.put("content", orderEvent.getContent());
+
+        return JSON.toJSONString(map);
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单号生成器，snowflake结构：41位毫秒时间戳 + 10位节点编号 + 12位序列号
+ * 节点编号优先使用配置，未配置时在redis中抢占一个编号并定时续约
+ * 续约在独立的单线程中执行，不与其他定时任务共用调度线程，避免其他任务占满线程时续约被推迟导致租约到期
+ * 本地记录租约的到期时间，租约到期前未能续约时停止生成，避免与之后抢占该编号的节点生成重复的订单号
+ * 时间戳和序列号保存在一个AtomicLong中通过CAS更新，生成时不加锁；
+ * 同一毫秒内序列号用完或时钟回拨时继续使用上一个时间戳并递增，保证同一节点内单调递增
+ */
+@Component
+@Slf4j
+public class OrderNumberGenerator {
+
+    //起始时间 2024-01-01 00:00:00 (UTC+8)
+    private static final long EPOCH = 1704038400000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final String NODE_KEY_PREFIX = "order_number:node:";
+
+    //只续约自己持有的节点编号
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    //只释放自己持有的节点编号
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //高位为相对EPOCH的时间戳，低12位为序列号
+    private final AtomicLong state = new AtomicLong();
+
+    //在redis中抢占节点编号时使用的标识
+    private final String token = UUID.randomUUID().toString();
+
+    private volatile long nodeId = -1;
+
+    //节点编号是否为自动分配
+    private boolean leased;
+
+    //自动分配的节点编号租约的本地到期时间（System.nanoTime），从发出请求前开始计算，早于redis中的实际到期时间
+    private volatile long leaseDeadline;
+
+    //续约线程，只有自动分配节点编号时创建
+    private ScheduledExecutorService renewExecutor;
+
+    @PostConstruct
+    public void init() {
+
+        Integer configuredNodeId = orderProperties.getNodeId();
+        if (configuredNodeId != null) {
+            if (configuredNodeId < 0 || configuredNodeId > MAX_NODE_ID) {
+                throw new IllegalStateException("sky.order.node-id 超出范围: " + configuredNodeId);
+            }
+            nodeId = configuredNodeId;
+        } else {
+            leased = true;
+            nodeId = acquireNodeId();
+
+            renewExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-number-lease");
+                thread.setDaemon(true);
+                return thread;
+            });
+            renewExecutor.scheduleWithFixedDelay(this::renewNodeLease, 10, 10, TimeUnit.SECONDS);
+        }
+
+        log.info("订单号生成器节点编号: {}", nodeId);
+    }
+
+    /**
+     * 生成订单号
+     * @return
+     */
+    public String nextNumber() {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 生成全局唯一、节点内单调递增的id
+     * @return
+     */
+    public long nextId() {
+
+        //租约已到期，该节点编号可能已被其他节点抢占
+        if (leased && System.nanoTime() - leaseDeadline >= 0) {
+            log.error("订单号生成器节点编号{}的租约已到期，停止生成订单号", nodeId);
+            throw new OrderBusinessException(MessageConstant.ORDER_NUMBER_UNAVAILABLE);
+        }
+
+        long last;
+        long next;
+        do {
+            last = state.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            //进入新的毫秒时序列号从0开始，否则序列号加1，溢出时进位到时间戳
+            next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+        } while (!state.compareAndSet(last, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 定时续约自动分配的节点编号，租约丢失时重新抢占
+     */
+    private void renewNodeLease() {
+
+        long ttl = orderProperties.getNodeLeaseTtl();
+        long start = System.nanoTime();
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                    Collections.singletonList(NODE_KEY_PREFIX + nodeId), token, String.valueOf(ttl));
+            if (renewed != null && renewed == 1) {
+                leaseDeadline = start + TimeUnit.SECONDS.toNanos(ttl);
+                return;
+            }
+
+            //原编号已不属于本节点，重新抢占完成前停止生成
+            leaseDeadline = System.nanoTime();
+            long lostNodeId = nodeId;
+            nodeId = acquireNodeId();
+            log.error("订单号生成器节点编号{}的租约已丢失，重新分配为: {}", lostNodeId, nodeId);
+        } catch (Throwable e) {
+            //续约失败时保留原租约，到期后停止生成订单号；捕获全部异常，避免续约任务被取消
+            log.error("订单号生成器节点编号{}续约失败", nodeId, e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+
+        if (leased) {
+            renewExecutor.shutdownNow();
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(NODE_KEY_PREFIX + nodeId), token);
+        }
+    }
+
+    /**
+     * 在redis中抢占一个空闲的节点编号，并记录租约的到期时间
+     * @return
+     */
+    private long acquireNodeId() {
+
+        Duration ttl = Duration.ofSeconds(orderProperties.getNodeLeaseTtl());
+
+        for (int id = 0; id <= MAX_NODE_ID; id++) {
+            long start = System.nanoTime();
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(NODE_KEY_PREFIX + id, token, ttl);
+            if (Boolean.TRUE.equals(acquired)) {
+                leaseDeadline = start + ttl.toNanos();
+                return id;
+            }
+        }
+
+        throw new IllegalStateException("订单号生成器没有可用的节点编号");
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.sky.order;
+
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 未付款订单超时队列，基于redis有序集合实现的延迟队列
+ * member为订单id，score为订单超时的时间戳（毫秒）
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue {
+
+    private static final String KEY = "order_timeout";
+
+    //取出已到期的订单并从队列中删除，多个节点同时消费时每个订单只会被一个节点取到
+    private static final RedisScript<List> POLL_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'limit', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('zrem', KEYS[1], unpack(ids)) end " +
+            "return ids",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    /**
+     * 订单提交后加入超时队列
+     * @param orderId
+     * @param orderTime
+     */
+    public void add(Long orderId, LocalDateTime orderTime) {
+
+        LocalDateTime deadline = orderTime.plusMinutes(orderProperties.getPaymentTimeout());
+        long score = deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        stringRedisTemplate.opsForZSet().add(KEY, String.valueOf(orderId), score);
+    }
+
+    /**
+     * 取消失败的订单重新放回队列，立即到期
+     * @param orderIds
+     */
+    public void requeue(Collection<Long> orderIds) {
+
+        long now = System.currentTimeMillis();
+        for (Long orderId : orderIds) {
+            stringRedisTemplate.opsForZSet().add(KEY, String.valueOf(orderId), now);
+        }
+    }
+
+    /**
+     * 取出已到期的订单
+     * @param limit 最多取出的订单数
+     * @return
+     */
+    public List<Long> pollExpired(int limit) {
+
+        List<String> ids = stringRedisTemplate.execute(POLL_SCRIPT, Collections.singletonList(KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(limit));
+
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return ids.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.sky.order;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付回调去重
+ * 已处理的微信支付交易号先在本节点内存中记录，再写入redis供其他节点查询
+ * 微信重复回调时直接应答，不再访问数据库
+ */
+@Component
+@Slf4j
+public class PayNotifyDeduplicator {
+
+    private static final String KEY_PREFIX = "pay_notify:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    //本节点已处理的交易号
+    private Cache<String, Boolean> processedIds;
+
+    @PostConstruct
+    public void init() {
+        processedIds = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(orderProperties.getPayNotifyDedupTtl(), TimeUnit.HOURS)
+                .build();
+    }
+
+    /**
+     * 交易号是否已处理过
+     * @param transactionId
+     * @return
+     */
+    public boolean isProcessed(String transactionId) {
+
+        if (transactionId == null) {
+            return false;
+        }
+
+        if (processedIds.getIfPresent(transactionId) != null) {
+            return true;
+        }
+
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(KEY_PREFIX + transactionId))) {
+                processedIds.put(transactionId, Boolean.TRUE);
+                return true;
+            }
+        } catch (Exception e) {
+            //redis不可用时交给订单状态条件更新保证幂等
+            log.warn("查询支付回调处理记录失败: {}", e.getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * 记录交易号已处理，需要在业务处理成功后调用，处理失败时微信重新回调可以再次处理
+     * @param transactionId
+     */
+    public void markProcessed(String transactionId) {
+
+        if (transactionId == null) {
+            return;
+        }
+
+        processedIds.put(transactionId, Boolean.TRUE);
+
+        try {
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + transactionId, "1",
+                    orderProperties.getPayNotifyDedupTtl(), TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("记录支付回调处理结果失败: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.sky.service;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BusinessStatService {
+
+    /**
+     * 新订单提交，累加当天订单总数
+     * @param orders
+     */
+    void increaseOrderCount(Orders orders);
+
+    /**
+     * 订单完成，累加当天营业额、有效订单数和商品销量
+     * @param orders
+     */
+    void increaseCompletedOrder(Orders orders);
+
+    /**
+     * 批量订单完成，按日期合并后累加营业额、有效订单数和商品销量
+     * @param ordersList
+     */
+    void increaseCompletedOrders(List<Orders> ordersList);
+
+    /**
+     * 新用户注册，累加当天新增用户数
+     * @param user
+     */
+    void increaseNewUser(User user);
+
+    /**
+     * 根据原始订单和用户数据重建指定日期区间内的汇总数据
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询指定日期区间内每天的汇总数据，没有数据的日期补0
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyStatisticsDTO> listDailyStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计指定日期之前的用户总量
+     * @param date
+     * @return
+     */
+    Integer getTotalUsersBefore(LocalDate date);
+
+    /**
+     * 统计指定日期区间内的销量排名top10
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop10(LocalDate begin, LocalDate end);
+}
@@ -62,4 +62,11 @@ public interface DishService {
      * @return
      */
     List<DishVO> listWithFlavors(Integer categoryId);
+
+    /**
+     * 根据菜品id查询所属的分类id
+     * @param ids
+     * @return
+     */
+    List<Long> getCategoryIdsByIds(List<Long> ids);
 }
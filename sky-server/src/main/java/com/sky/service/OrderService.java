@@ -1,12 +1,16 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.entity.Orders;
 import com.sky.result.PageResult;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 public interface OrderService {
 
     /**
@@ -103,4 +107,14 @@ public interface OrderService {
      * @param id
      */
     void reminder(Long id);
+
+    /**
+     * 将指定状态且下单时间早于指定时间的订单批量修改为目标状态，每次最多处理limit个订单
+     * @param fromStatus
+     * @param orderTime
+     * @param target 目标状态及需要同时修改的字段
+     * @param limit
+     * @return 本次修改的订单
+     */
+    List<Orders> transitionStatus(Integer fromStatus, LocalDateTime orderTime, Orders target, int limit);
 }
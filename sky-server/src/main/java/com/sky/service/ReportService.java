@@ -6,6 +6,8 @@ import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 
 public interface ReportService {
@@ -47,9 +49,21 @@ public interface ReportService {
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
 
     /**
-     * 导出运营数据报表
+     * 导出指定区间内的运营数据报表
      *
+     * @param begin
+     * @param end
      * @param response
      */
-    void exportBusinessDate(HttpServletResponse response);
+    void exportBusinessDate(LocalDate begin, LocalDate end, HttpServletResponse response);
+
+    /**
+     * 导出指定区间内的运营数据报表到输出流
+     *
+     * @param begin
+     * @param end
+     * @param out
+     * @throws IOException
+     */
+    void exportBusinessDate(LocalDate begin, LocalDate end, OutputStream out) throws IOException;
 }
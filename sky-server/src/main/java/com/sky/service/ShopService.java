@@ -0,0 +1,22 @@
+package com.sky.service;
+
+public interface ShopService {
+
+    /**
+     * 设置店铺营业状态，并通知所有节点
+     * @param status
+     */
+    void setStatus(Integer status);
+
+    /**
+     * 获取店铺营业状态，直接读取本节点内存中的状态
+     * @return
+     */
+    Integer getStatus();
+
+    /**
+     * 从redis重新加载店铺营业状态
+     */
+    void refresh();
+
+}
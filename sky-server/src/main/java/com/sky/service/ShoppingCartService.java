@@ -1,6 +1,7 @@
 package com.sky.service;
 
 import com.sky.dto.ShoppingCartDTO;
+import com.sky.dto.ShoppingCartOperationDTO;
 import com.sky.entity.ShoppingCart;
 
 import java.util.List;
@@ -32,4 +33,11 @@ public interface ShoppingCartService {
      * @param shoppingCartDTO
      */
     void deleteOne(ShoppingCartDTO shoppingCartDTO);
+
+
+    /**
+     * 批量修改购物车
+     * @param operations
+     */
+    void batch(List<ShoppingCartOperationDTO> operations);
 }
@@ -1,10 +1,12 @@
 package com.sky.service;
 
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
 import java.time.LocalDateTime;
+import java.util.List;
 
 public interface WorkspaceService {
 
@@ -16,6 +18,13 @@ public interface WorkspaceService {
      */
     BusinessDataVO getBusinessData(LocalDateTime begin, LocalDateTime end);
 
+    /**
+     * 根据每日汇总数据统计营业数据
+     * @param dailyStatisticsList
+     * @return
+     */
+    BusinessDataVO getBusinessData(List<DailyStatisticsDTO> dailyStatisticsList);
+
     /**
      * 查询订单管理数据
      * @return
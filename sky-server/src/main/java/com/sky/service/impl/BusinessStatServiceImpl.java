@@ -0,0 +1,280 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.BusinessDailyStat;
+import com.sky.entity.GoodsDailySales;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.mapper.BusinessDailyStatMapper;
+import com.sky.mapper.GoodsDailySalesMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BusinessStatServiceImpl implements BusinessStatService {
+
+    @Autowired
+    private BusinessDailyStatMapper businessDailyStatMapper;
+
+    @Autowired
+    private GoodsDailySalesMapper goodsDailySalesMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    /**
+     * 新订单提交，累加当天订单总数
+     * 在下单事务提交后累加，避免所有下单请求在事务内排队等待当天汇总数据的行锁
+     * @param orders
+     */
+    @Override
+    public void increaseOrderCount(Orders orders) {
+
+        BusinessDailyStat businessDailyStat = emptyStat(orders.getOrderTime().toLocalDate());
+        businessDailyStat.setTotalOrderCount(1);
+
+        increaseAfterCommit(businessDailyStat);
+    }
+
+    /**
+     * 订单完成，累加当天营业额、有效订单数和商品销量
+     * 订单按下单日期归属，与原始统计口径保持一致
+     * @param orders
+     */
+    @Override
+    public void increaseCompletedOrder(Orders orders) {
+        increaseCompletedOrders(Collections.singletonList(orders));
+    }
+
+    /**
+     * 批量订单完成，按日期合并后累加营业额、有效订单数和商品销量
+     * @param ordersList
+     */
+    @Override
+    public void increaseCompletedOrders(List<Orders> ordersList) {
+
+        if (ordersList == null || ordersList.isEmpty()) {
+            return;
+        }
+
+        // 按下单日期合并营业额和有效订单数
+        Map<LocalDate, BusinessDailyStat> statMap = new TreeMap<>();
+        Map<Long, LocalDate> orderDateMap = new HashMap<>();
+        for (Orders orders : ordersList) {
+            LocalDate statDate = orders.getOrderTime().toLocalDate();
+            orderDateMap.put(orders.getId(), statDate);
+
+            BusinessDailyStat businessDailyStat = statMap.computeIfAbsent(statDate, this::emptyStat);
+            businessDailyStat.setTurnover(businessDailyStat.getTurnover().add(orders.getAmount()));
+            businessDailyStat.setValidOrderCount(businessDailyStat.getValidOrderCount() + 1);
+        }
+        statMap.values().forEach(businessDailyStatMapper::increase);
+
+        // 按日期和商品名称合并各商品的销量
+        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderIds(new ArrayList<>(orderDateMap.keySet()));
+        if (orderDetailList != null && !orderDetailList.isEmpty()) {
+            Map<String, GoodsDailySales> salesMap = new LinkedHashMap<>();
+            for (OrderDetail orderDetail : orderDetailList) {
+                LocalDate statDate = orderDateMap.get(orderDetail.getOrderId());
+                GoodsDailySales goodsDailySales = salesMap.computeIfAbsent(statDate + ":" + orderDetail.getName(),
+                        key -> GoodsDailySales.builder()
+                                .statDate(statDate)
+                                .name(orderDetail.getName())
+                                .number(0)
+                                .build());
+                goodsDailySales.setNumber(goodsDailySales.getNumber() + orderDetail.getNumber());
+            }
+            goodsDailySalesMapper.increaseBatch(new ArrayList<>(salesMap.values()));
+        }
+    }
+
+    /**
+     * 新用户注册，累加当天新增用户数
+     * 在注册事务提交后累加，避免所有注册请求在事务内排队等待当天汇总数据的行锁
+     * @param user
+     */
+    @Override
+    public void increaseNewUser(User user) {
+
+        BusinessDailyStat businessDailyStat = emptyStat(user.getCreateTime().toLocalDate());
+        businessDailyStat.setNewUsers(1);
+
+        increaseAfterCommit(businessDailyStat);
+    }
+
+    /**
+     * 根据原始订单和用户数据重建指定日期区间内的汇总数据
+     * 当天的数据仍在事务提交后累加，不参与重建，否则重建期间提交的增量会被覆盖；
+     * 订单完成的增量在订单事务内累加，先锁定区间内的汇总数据再统计，期间完成的订单等待重建提交后再累加
+     * @param begin
+     * @param end
+     */
+    @Override
+    @Transactional
+    public void rebuild(LocalDate begin, LocalDate end) {
+
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        if (end.isAfter(yesterday)) {
+            end = yesterday;
+        }
+        if (begin.isAfter(end)) {
+            return;
+        }
+
+        log.info("重建营业数据汇总: {}, {}", begin, end);
+
+        // 锁定区间内的汇总数据，阻塞并发的增量累加直到重建提交
+        businessDailyStatMapper.lockByDate(begin, end);
+        goodsDailySalesMapper.lockByDate(begin, end);
+
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+
+        // 按天分组查询原始订单和用户数据
+        Map<LocalDate, DailyStatisticsDTO> orderStatisticsMap = orderMapper.sumGroupByDay(beginTime, endTime)
+                .stream()
+                .collect(Collectors.toMap(DailyStatisticsDTO::getDate, dailyStatistics -> dailyStatistics));
+        Map<LocalDate, Integer> newUserMap = userMapper.countGroupByDay(beginTime, endTime)
+                .stream()
+                .collect(Collectors.toMap(DailyStatisticsDTO::getDate, DailyStatisticsDTO::getNewUsers));
+
+        // 区间内每天都写入一条数据，没有数据的日期写0
+        List<BusinessDailyStat> businessDailyStatList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            BusinessDailyStat businessDailyStat = emptyStat(date);
+
+            DailyStatisticsDTO orderStatistics = orderStatisticsMap.get(date);
+            if (orderStatistics != null) {
+                businessDailyStat.setTurnover(BigDecimal.valueOf(orderStatistics.getTurnover()));
+                businessDailyStat.setValidOrderCount(orderStatistics.getValidOrderCount());
+                businessDailyStat.setTotalOrderCount(orderStatistics.getTotalOrderCount());
+            }
+            businessDailyStat.setNewUsers(newUserMap.getOrDefault(date, 0));
+
+            businessDailyStatList.add(businessDailyStat);
+        }
+        businessDailyStatMapper.replaceBatch(businessDailyStatList);
+
+        // 重建商品销量
+        goodsDailySalesMapper.deleteByDate(begin, end);
+        List<GoodsDailySales> goodsDailySalesList = orderMapper.getSalesGroupByDay(beginTime, endTime);
+        if (goodsDailySalesList != null && !goodsDailySalesList.isEmpty()) {
+            goodsDailySalesMapper.insertBatch(goodsDailySalesList);
+        }
+    }
+
+    /**
+     * 查询指定日期区间内每天的汇总数据，没有数据的日期补0
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public List<DailyStatisticsDTO> listDailyStatistics(LocalDate begin, LocalDate end) {
+
+        Map<LocalDate, DailyStatisticsDTO> dailyStatisticsMap = businessDailyStatMapper.listByDate(begin, end)
+                .stream()
+                .collect(Collectors.toMap(DailyStatisticsDTO::getDate, dailyStatistics -> dailyStatistics));
+
+        List<DailyStatisticsDTO> dailyStatisticsList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyStatisticsDTO dailyStatistics = dailyStatisticsMap.get(date);
+            if (dailyStatistics == null) {
+                dailyStatistics = new DailyStatisticsDTO(date, 0.0, 0, 0, 0);
+            }
+            dailyStatisticsList.add(dailyStatistics);
+        }
+
+        return dailyStatisticsList;
+    }
+
+    /**
+     * 统计指定日期之前的用户总量
+     * @param date
+     * @return
+     */
+    @Override
+    public Integer getTotalUsersBefore(LocalDate date) {
+        return businessDailyStatMapper.sumNewUsersBefore(date);
+    }
+
+    /**
+     * 统计指定日期区间内的销量排名top10
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public List<GoodsSalesDTO> getSalesTop10(LocalDate begin, LocalDate end) {
+        return goodsDailySalesMapper.getSalesTop10(begin, end);
+    }
+
+    /**
+     * 累加汇总数据，处于事务中时在事务提交后累加，累加失败只记录日志，由定时重建修正
+     * @param businessDailyStat
+     */
+    private void increaseAfterCommit(BusinessDailyStat businessDailyStat) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            businessDailyStatMapper.increase(businessDailyStat);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    businessDailyStatMapper.increase(businessDailyStat);
+                } catch (Exception e) {
+                    log.error("累加营业数据汇总失败: {}", businessDailyStat, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 构造指定日期的空汇总数据，用于增量累加
+     * @param date
+     * @return
+     */
+    private BusinessDailyStat emptyStat(LocalDate date) {
+        return BusinessDailyStat.builder()
+                .statDate(date)
+                .turnover(BigDecimal.ZERO)
+                .validOrderCount(0)
+                .totalOrderCount(0)
+                .newUsers(0)
+                .updateTime(LocalDateTime.now())
+                .build();
+    }
+}
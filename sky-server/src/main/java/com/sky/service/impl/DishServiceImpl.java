@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.ProductSnapshotCache;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -22,7 +23,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class DishServiceImpl implements DishService {
@@ -36,6 +40,9 @@ public class DishServiceImpl implements DishService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+
     /**
      * 新增菜品和对应口味
      * @param dishDTO
@@ -63,6 +70,9 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
+        //清除该id可能存在的旧快照
+        productSnapshotCache.evictDishes(Collections.singletonList(dishId));
+
     }
 
     /**
@@ -92,7 +102,7 @@ public class DishServiceImpl implements DishService {
     @Override
     public void deleteBatch(List<Long> ids) {
 
-        //判断菜品能否删除，是否存在起售中的菜品
+        //判断菜品能否删除，是否存在起售中的菜品，需要读取数据库中的最新状态
         for (Long id: ids) {
             Dish dish = dishMapper.getById(id);
             if (dish.getStatus() == StatusConstant.ENABLE) {
@@ -114,6 +124,7 @@ public class DishServiceImpl implements DishService {
         //根据菜品id批量删除菜品关联的口味数据
         dishFlavorMapper.deleteByDishIds(ids);
 
+        productSnapshotCache.evictDishes(ids);
 
     }
 
@@ -126,7 +137,7 @@ public class DishServiceImpl implements DishService {
     public DishVO getByIdWithFlavor(Long id) {
 
         //根据id查询菜品数据
-        Dish dish = dishMapper.getById(id);
+        Dish dish = productSnapshotCache.getDish(id);
 
         //根据菜品id查询口味数据
         List<DishFlavor> dishFlavors = dishFlavorMapper.getByDishId(id);
@@ -164,6 +175,8 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
+        productSnapshotCache.evictDishes(Collections.singletonList(dishDTO.getId()));
+
     }
 
     /**
@@ -181,6 +194,8 @@ public class DishServiceImpl implements DishService {
 
         dishMapper.update(dish);
 
+        productSnapshotCache.evictDishes(Collections.singletonList(id));
+
     }
 
     /**
@@ -208,14 +223,23 @@ public class DishServiceImpl implements DishService {
 
         //根据categoryId查询菜品集合
         List<Dish> dishList = dishMapper.getByCategoryId(categoryId);
+        if (dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        //一次查询所有菜品的口味，按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds)
+                .stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish dish : dishList) {
             //封装到VO对象中
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(dish, dishVO);
 
-            //根据菜品id查询对应口味集合
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(dish.getId());
+            //从分组结果中取出菜品对应口味集合
+            List<DishFlavor> flavors = flavorMap.getOrDefault(dish.getId(), new ArrayList<>());
             dishVO.setFlavors(flavors);
 
             dishVOList.add(dishVO);
@@ -224,4 +248,14 @@ public class DishServiceImpl implements DishService {
         return dishVOList;
     }
 
+    /**
+     * 根据菜品id查询所属的分类id
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<Long> getCategoryIdsByIds(List<Long> ids) {
+        return dishMapper.getCategoryIdsByIds(ids);
+    }
+
 }
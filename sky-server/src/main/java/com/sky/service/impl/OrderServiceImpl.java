@@ -1,9 +1,10 @@
 package com.sky.service.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.cart.ShoppingCartStore;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
@@ -12,14 +13,17 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.order.OrderEventOutbox;
+import com.sky.order.OrderNumberGenerator;
+import com.sky.order.OrderTimeoutQueue;
 import com.sky.result.PageResult;
+import com.sky.service.BusinessStatService;
 import com.sky.service.OrderService;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
-import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,7 +52,7 @@ public class OrderServiceImpl implements OrderService {
     private AddressBookMapper addressBookMapper;
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartStore shoppingCartStore;
 
     @Autowired
     private UserMapper userMapper;
@@ -57,7 +61,19 @@ public class OrderServiceImpl implements OrderService {
     private WeChatPayUtil weChatPayUtil;
 
     @Autowired
-    private WebSocketServer webSocketServer;
+    private OrderEventOutbox orderEventOutbox;
+
+    @Autowired
+    private BusinessStatService businessStatService;
+
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
 
     /**
      * 用户下单
@@ -76,9 +92,7 @@ public class OrderServiceImpl implements OrderService {
 
         Long userId = BaseContext.getCurrentId();   //获取当前微信用户id
 
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartStore.list(userId);
         if (shoppingCartList == null || shoppingCartList.isEmpty()) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
@@ -86,7 +100,7 @@ public class OrderServiceImpl implements OrderService {
         //2.向订单表插入1条数据
         Orders orders = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO, orders);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setNumber(orderNumberGenerator.nextNumber());
         orders.setStatus(Orders.PENDING_PAYMENT);
         orders.setPayStatus(Orders.UN_PAID);
         orders.setUserId(userId);
@@ -101,6 +115,12 @@ public class OrderServiceImpl implements OrderService {
 
         orderMapper.insert(orders);
 
+        //累加当天营业数据汇总中的订单总数
+        businessStatService.increaseOrderCount(orders);
+
+        //加入超时队列，超时未付款时自动取消
+        orderTimeoutQueue.add(orders.getId(), orders.getOrderTime());
+
         //3.向订单明细表插入n条数据
         List<OrderDetail> orderDetailList = new ArrayList<>();
         for (ShoppingCart cart : shoppingCartList) {
@@ -112,7 +132,7 @@ public class OrderServiceImpl implements OrderService {
         orderDetailMapper.insertBatch(orderDetailList);
 
         //4.清空当前用户的购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
+        shoppingCartStore.clean(userId);
 
         //5.封装VO返回
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -131,6 +151,7 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersPaymentDTO
      * @return
      */
+    @Transactional
     @Override
     public OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception {
         // 当前登录用户id
@@ -157,16 +178,11 @@ public class OrderServiceImpl implements OrderService {
 
         // 根据订单号查询当前用户的该订单
         Orders ordersDB = orderMapper.getByNumberAndUserId(ordersPaymentDTO.getOrderNumber(), userId);
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
 
-        // 更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-               .id(ordersDB.getId())
-               .status(Orders.TO_BE_CONFIRMED) // 订单状态，待接单
-               .payStatus(Orders.PAID) // 支付状态，已支付
-               .checkoutTime(LocalDateTime.now()) // 更新支付时间
-               .build();
-        orderMapper.update(orders);
-
+        // 更新订单的状态、支付状态、结账时间，并写入来单提醒
         paySuccess(ordersPaymentDTO.getOrderNumber());
 
         return vo;
@@ -174,33 +190,64 @@ public class OrderServiceImpl implements OrderService {
 
     /**
      * 支付成功，修改订单状态
+     * 只有待付款的订单会被修改，重复的支付通知不会重复修改订单和推送来单提醒
      *
      * @param outTradeNo
      */
+    @Transactional
     public void paySuccess(String outTradeNo) {
 
-        // 根据订单号查询订单
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
-
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
+        // 根据订单号更新订单的状态、支付状态、结账时间，只修改仍待付款的订单
         Orders orders = Orders.builder()
-                .id(ordersDB.getId())
                 .status(Orders.TO_BE_CONFIRMED)
                 .payStatus(Orders.PAID)
                 .checkoutTime(LocalDateTime.now())
                 .build();
 
-        orderMapper.update(orders);
+        Integer count = orderMapper.updatePayStatusByNumber(outTradeNo, Orders.PENDING_PAYMENT, orders);
 
+        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        if (ordersDB == null) {
+            //抛出异常不应答，微信会重新通知
+            log.error("支付通知对应的订单{}不存在", outTradeNo);
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
 
-        //通过websocket向客户端浏览器推送消息 json: type orderId content
-        Map map = new HashMap();
-        map.put("type", 1);     //1-来单提醒 2-客户催单
-        map.put("orderId", ordersDB.getId());
-        map.put("content", "订单号：" + outTradeNo);
+        if (count == 0) {
+            if (Orders.CANCELLED.equals(ordersDB.getStatus())) {
+                //订单已超时取消或被取消后用户才完成支付，需要退款
+                refundCancelledOrder(ordersDB);
+            } else {
+                log.info("订单{}不是待付款状态，忽略重复的支付通知", outTradeNo);
+            }
+            return;
+        }
 
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        //写入来单提醒事件，提交后由发件箱异步推送给管理端
+        orderEventOutbox.add(ordersDB.getId(), OrderEvent.NEW_ORDER, "订单号：" + outTradeNo);
+    }
+
+    /**
+     * 已取消的订单收到付款时退款，同一订单只退款一次
+     * @param ordersDB
+     */
+    private void refundCancelledOrder(Orders ordersDB) {
+
+        //只有未支付的已取消订单需要退款，支付状态已为退款时说明已处理过
+        Integer count = orderMapper.updatePayStatusById(ordersDB.getId(), Orders.CANCELLED, Orders.UN_PAID, Orders.REFUND);
+        if (count == 0) {
+            log.info("已取消的订单{}已处理过退款，忽略重复的支付通知", ordersDB.getNumber());
+            return;
+        }
+
+        log.error("已取消的订单{}收到付款，申请退款，取消原因：{}", ordersDB.getNumber(), ordersDB.getCancelReason());
+
+        // //调用微信支付退款接口
+        // weChatPayUtil.refund(
+        //         ordersDB.getNumber(), //商户订单号
+        //         ordersDB.getNumber(), //商户退款单号
+        //         ordersDB.getAmount(),//退款金额，单位 元
+        //         ordersDB.getAmount());//原订单金额
     }
 
     /**
@@ -228,13 +275,15 @@ public class OrderServiceImpl implements OrderService {
 
         List<Orders> ordersList = pageOrders.getResult();
 
+        //一次性查询本页所有订单的明细，按订单id分组
+        Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
         //封装集合中的OrderVO对象
         for (Orders orders : ordersList) {
             OrderVO orderVO = new OrderVO();
             BeanUtils.copyProperties(orders, orderVO);
 
-            Long orderId = orders.getId();
-            List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orderId);
+            List<OrderDetail> orderDetailList = orderDetailMap.getOrDefault(orders.getId(), Collections.emptyList());
             orderVO.setOrderDetailList(orderDetailList);
 
             //加入到集合中
@@ -334,11 +383,28 @@ public class OrderServiceImpl implements OrderService {
             shoppingCart.setUserId(userId);
             shoppingCart.setCreateTime(LocalDateTime.now());
 
+            //使用商品当前的名称、图片、价格，商品已删除时保留订单中的数据
+            if (orderDetail.getSetmealId() != null) {
+                Setmeal setmeal = productSnapshotCache.getSetmeal(orderDetail.getSetmealId());
+                if (setmeal != null) {
+                    shoppingCart.setName(setmeal.getName());
+                    shoppingCart.setImage(setmeal.getImage());
+                    shoppingCart.setAmount(setmeal.getPrice());
+                }
+            } else {
+                Dish dish = productSnapshotCache.getDish(orderDetail.getDishId());
+                if (dish != null) {
+                    shoppingCart.setName(dish.getName());
+                    shoppingCart.setImage(dish.getImage());
+                    shoppingCart.setAmount(dish.getPrice());
+                }
+            }
+
             shoppingCartList.add(shoppingCart);
         }
 
-        //批量插入购物车数据
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        //批量加入购物车
+        shoppingCartStore.addBatch(shoppingCartList);
 
     }
 
@@ -372,12 +438,16 @@ public class OrderServiceImpl implements OrderService {
         List<Orders> ordersList = page.getResult();
 
         if (!CollectionUtils.isEmpty(ordersList)) {
+            //一次性查询本页所有订单的明细，按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
             for (Orders orders : page) {
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
 
                 //获取菜品信息orderDishes，封装到OrderVO中
-                String orderDishes = getOrderDishesStr(orders);
+                List<OrderDetail> orderDetailList = orderDetailMap.getOrDefault(orders.getId(), Collections.emptyList());
+                String orderDishes = getOrderDishesStr(orderDetailList);
                 orderVO.setOrderDishes(orderDishes);
 
                 orderVOList.add(orderVO);
@@ -389,15 +459,32 @@ public class OrderServiceImpl implements OrderService {
 
 
     /**
-     * 根据订单id获取菜品信息字符串
+     * 批量查询订单明细，并按订单id分组
      *
-     * @param orders
+     * @param ordersList
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        // 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+
+        if (CollectionUtils.isEmpty(ordersList)) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
 
+        // 一条sql查出所有订单的明细，避免每个订单单独查询一次
+        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderIds(orderIds);
+
+        return orderDetailList.stream().collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
+
+    /**
+     * 根据订单明细获取菜品信息字符串
+     *
+     * @param orderDetailList
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
         // 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁*3；）
         List<String> orderDishList = orderDetailList.stream().map(x -> {
             String orderDish = x.getName() + "*" + x.getNumber() + ";";
@@ -559,6 +646,7 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     @Override
+    @Transactional
     public void complete(Long id) {
 
         // 根据id查询订单
@@ -569,14 +657,19 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        // 更新订单状态,状态转为已完成
+        // 更新订单状态,状态转为已完成，带状态条件更新，并发完成同一订单时只有一次生效
         Orders orders = Orders.builder()
-                .id(id)
                 .status(Orders.COMPLETED)
                 .deliveryTime(LocalDateTime.now())
                 .build();
 
-        orderMapper.update(orders);
+        Integer count = orderMapper.updateStatusByIds(Collections.singletonList(id), Orders.DELIVERY_IN_PROGRESS, orders);
+        if (count == null || count != 1) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+
+        // 累加营业数据汇总中的营业额、有效订单数和商品销量
+        businessStatService.increaseCompletedOrder(ordersDB);
 
     }
 
@@ -595,15 +688,38 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
-        //向管理端推送催单提醒
-        Map map = new HashMap();
-        map.put("type", 2);     //1-来单提醒 2-客户催单
-        map.put("orderId", id);
-        map.put("content", "订单号：" + ordersDB.getNumber());
+        //写入催单提醒事件，由发件箱异步推送给管理端
+        orderEventOutbox.add(id, OrderEvent.REMINDER, "订单号：" + ordersDB.getNumber());
+
+    }
+
+    /**
+     * 将指定状态且下单时间早于指定时间的订单批量修改为目标状态，每次最多处理limit个订单
+     * 在同一事务中先锁定再修改，修改的订单与查询到的订单一致，且每个事务最多锁定limit行
+     * @param fromStatus
+     * @param orderTime
+     * @param target 目标状态及需要同时修改的字段
+     * @param limit
+     * @return 本次修改的订单
+     */
+    @Override
+    @Transactional
+    public List<Orders> transitionStatus(Integer fromStatus, LocalDateTime orderTime, Orders target, int limit) {
+
+        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLTForUpdate(fromStatus, orderTime, limit);
+        if (ordersList == null || ordersList.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> ids = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        orderMapper.updateStatusByIds(ids, fromStatus, target);
 
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        //订单完成时累加营业数据汇总中的营业额、有效订单数和商品销量
+        if (Orders.COMPLETED.equals(target.getStatus())) {
+            businessStatService.increaseCompletedOrders(ordersList);
+        }
 
+        return ordersList;
     }
 
 }
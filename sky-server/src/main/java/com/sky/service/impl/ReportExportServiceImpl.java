@@ -0,0 +1,260 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.ReportExportException;
+import com.sky.properties.ReportProperties;
+import com.sky.service.ReportExportService;
+import com.sky.service.ReportService;
+import com.sky.vo.ReportExportJobVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步导出报表，导出在独立线程池中执行，不占用处理请求的线程
+ * 任务记录保存在redis中，导出文件保存在各节点共享的目录中，任意节点都可以查询和下载其他节点提交的任务
+ */
+@Service
+@Slf4j
+public class ReportExportServiceImpl implements ReportExportService {
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    //导出任务记录的key前缀，后接任务id
+    private static final String JOB_KEY_PREFIX = "report_export:job:";
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() throws IOException {
+
+        Files.createDirectories(Paths.get(reportProperties.getExportDir()));
+
+        //清理之前进程遗留的报表文件
+        cleanExpiredFiles(LocalDateTime.now().minusMinutes(reportProperties.getExportTtl()));
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = new ThreadPoolExecutor(
+                reportProperties.getExportThreads(),
+                reportProperties.getExportThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(reportProperties.getExportQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-export-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交报表导出任务
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public ReportExportJobVO submit(LocalDate begin, LocalDate end) {
+
+        if (begin.isAfter(end)) {
+            throw new ReportExportException(MessageConstant.REPORT_DATE_INVALID);
+        }
+
+        ReportExportJobVO job = ReportExportJobVO.builder()
+                .jobId(UUID.randomUUID().toString().replace("-", ""))
+                .status(ReportExportJobVO.WAITING)
+                .begin(begin)
+                .end(end)
+                .createTime(LocalDateTime.now())
+                .build();
+        saveJob(job);
+
+        try {
+            executor.execute(() -> export(job));
+        } catch (RejectedExecutionException e) {
+            //队列已满，拒绝本次导出
+            redisTemplate.delete(JOB_KEY_PREFIX + job.getJobId());
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_BUSY);
+        }
+
+        return job;
+    }
+
+    /**
+     * 查询报表导出任务
+     * @param jobId
+     * @return
+     */
+    @Override
+    public ReportExportJobVO getJob(String jobId) {
+
+        ReportExportJobVO job = (ReportExportJobVO) redisTemplate.opsForValue().get(JOB_KEY_PREFIX + jobId);
+        if (job == null) {
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_NOT_FOUND);
+        }
+
+        return job;
+    }
+
+    /**
+     * 下载已完成的报表文件
+     * @param jobId
+     * @param response
+     */
+    @Override
+    public void download(String jobId, HttpServletResponse response) {
+
+        ReportExportJobVO job = getJob(jobId);
+        if (!ReportExportJobVO.SUCCESS.equals(job.getStatus())) {
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_NOT_READY);
+        }
+
+        //文件已被清理，或导出目录未在各节点间共享
+        Path file = getFile(jobId);
+        if (!Files.isRegularFile(file)) {
+            throw new ReportExportException(MessageConstant.REPORT_EXPORT_NOT_FOUND);
+        }
+
+        String fileName = "business-report-" + job.getBegin() + "-" + job.getEnd() + ".xlsx";
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader("Content-Disposition", "attachment;filename=" + fileName);
+
+        try {
+            ServletOutputStream out = response.getOutputStream();
+            Files.copy(file, out);
+            out.close();
+        } catch (IOException e) {
+            log.error("下载报表文件失败: {}", jobId, e);
+        }
+    }
+
+    /**
+     * 清理过期的导出文件，任务记录由redis按保留时间自动过期
+     */
+    @Override
+    public void cleanExpired() {
+        cleanExpiredFiles(LocalDateTime.now().minusMinutes(reportProperties.getExportTtl()));
+    }
+
+    /**
+     * 清理导出目录中任务记录已过期且修改时间早于指定时间的文件，包括进程重启或崩溃前遗留的临时文件
+     * 导出目录由各节点共享，任务记录仍存在的文件可能正由其他节点导出或等待下载，不清理
+     * @param expireTime
+     */
+    private void cleanExpiredFiles(LocalDateTime expireTime) {
+
+        long expireMillis = expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(reportProperties.getExportDir()))) {
+            for (Path file : stream) {
+                //文件名为 任务id.xlsx 或 任务id.xlsx.tmp
+                String fileName = file.getFileName().toString();
+                int index = fileName.indexOf('.');
+                String jobId = index < 0 ? fileName : fileName.substring(0, index);
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < expireMillis
+                            && !Boolean.TRUE.equals(redisTemplate.hasKey(JOB_KEY_PREFIX + jobId))) {
+                        Files.deleteIfExists(file);
+                        log.info("删除过期的报表文件: {}", fileName);
+                    }
+                } catch (Exception e) {
+                    log.error("删除过期的报表文件失败: {}", fileName, e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("清理报表导出目录失败", e);
+        }
+    }
+
+    /**
+     * 执行导出任务，先写入临时文件，完成后再重命名，避免下载到不完整的文件
+     * @param job
+     */
+    private void export(ReportExportJobVO job) {
+
+        log.info("开始导出报表: {}, {}, {}", job.getJobId(), job.getBegin(), job.getEnd());
+        Path file = getFile(job.getJobId());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            job.setStatus(ReportExportJobVO.RUNNING);
+            saveJob(job);
+
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                reportService.exportBusinessDate(job.getBegin(), job.getEnd(), out);
+            }
+            Files.move(tempFile, file);
+
+            job.setStatus(ReportExportJobVO.SUCCESS);
+        } catch (Exception e) {
+            log.error("导出报表失败: {}", job.getJobId(), e);
+            job.setStatus(ReportExportJobVO.FAILED);
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ex) {
+                log.error("删除报表临时文件失败: {}", job.getJobId(), ex);
+            }
+        }
+
+        job.setFinishTime(LocalDateTime.now());
+        try {
+            saveJob(job);
+        } catch (Exception e) {
+            log.error("保存报表导出任务失败: {}", job.getJobId(), e);
+        }
+    }
+
+    /**
+     * 保存导出任务记录，每次状态变化都重新计算过期时间，完成后保留exportTtl分钟
+     * @param job
+     */
+    private void saveJob(ReportExportJobVO job) {
+        redisTemplate.opsForValue().set(JOB_KEY_PREFIX + job.getJobId(), job,
+                Duration.ofMinutes(reportProperties.getExportTtl()));
+    }
+
+    /**
+     * 获取导出任务对应的文件路径
+     * @param jobId
+     * @return
+     */
+    private Path getFile(String jobId) {
+        return Paths.get(reportProperties.getExportDir(), jobId + ".xlsx");
+    }
+}
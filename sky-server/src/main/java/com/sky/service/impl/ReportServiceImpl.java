@@ -1,14 +1,18 @@
 package com.sky.service.impl;
 
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.dto.GoodsSalesDTO;
-import com.sky.entity.Orders;
-import com.sky.mapper.OrderMapper;
-import com.sky.mapper.UserMapper;
 import com.sky.result.Result;
+import com.sky.service.BusinessStatService;
 import com.sky.service.ReportService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.*;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -19,11 +23,12 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -31,11 +36,15 @@ import java.util.stream.Collectors;
 @Service
 public class ReportServiceImpl implements ReportService {
 
-    @Autowired
-    private OrderMapper orderMapper;
+    // 模板中明细数据的起始行和最后一列
+    private static final int DETAIL_FIRST_ROW = 7;
+    private static final int DETAIL_LAST_CELL = 6;
+
+    // 流式写入时内存中保留的行数
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
 
     @Autowired
-    private UserMapper userMapper;
+    private BusinessStatService businessStatService;
 
     @Autowired
     private WorkspaceService workspaceService;
@@ -53,21 +62,13 @@ public class ReportServiceImpl implements ReportService {
         // 获取日期列表
         List<LocalDate> dateList = getDateList(begin, end);
 
+        // 从每日汇总数据中查询营业额
+        Map<LocalDate, DailyStatisticsDTO> orderStatisticsMap = getDailyStatisticsMap(begin, end);
+
         // 获取营业额列表
         List<Double> turnoverList = new ArrayList<>();
         for (LocalDate date : dateList) {
-            // 查询date日期对应的营业额数据
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);    // 当天开始时间
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);      // 当天结束时间
-
-            // 统计时间在当天且订单状态为已完成的订单总营业额
-            Map map = new HashMap();
-            map.put("begin", beginTime);
-            map.put("end", endTime);
-            map.put("status", Orders.COMPLETED);
-            Double turnover = orderMapper.sumByMap(map);
-            turnover = turnover == null ? 0.0 : turnover;
-            turnoverList.add(turnover);
+            turnoverList.add(orderStatisticsMap.get(date).getTurnover());
         }
 
         // 封装VO对象
@@ -92,26 +93,23 @@ public class ReportServiceImpl implements ReportService {
         // 获取日期列表
         List<LocalDate> dateList = getDateList(begin, end);
 
-        // 获取新增用户数列表 select count(id) from user where create_time < ? and create_time > ?
+        // 区间开始前的用户总量
+        Integer totalUser = businessStatService.getTotalUsersBefore(begin);
+
+        // 从每日汇总数据中查询新增用户数
+        Map<LocalDate, DailyStatisticsDTO> userStatisticsMap = getDailyStatisticsMap(begin, end);
+
+        // 获取新增用户数列表
         List<Integer> newUserList = new ArrayList<>();
-        // 获取总用户量列表 select count(id) from user where create_time < ?
+        // 获取总用户量列表，由每天的新增用户数累加得到
         List<Integer> totalUserList = new ArrayList<>();
 
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);    // 当天开始时间
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);      // 当天结束时间
-
-            Map map = new HashMap();
+            Integer newUser = userStatisticsMap.get(date).getNewUsers();
+            totalUser += newUser;
 
-            // 总用户统计
-            map.put("end", endTime);
-            Integer totalUser = userMapper.countByMap(map);
-            totalUserList.add(totalUser);
-
-            // 新增用户统计
-            map.put("begin", beginTime);
-            Integer newUser = userMapper.countByMap(map);
             newUserList.add(newUser);
+            totalUserList.add(totalUser);
         }
 
         UserReportVO userReportVO = UserReportVO.builder()
@@ -136,25 +134,18 @@ public class ReportServiceImpl implements ReportService {
         // 获取日期列表
         List<LocalDate> dateList = getDateList(begin, end);
 
+        // 从每日汇总数据中查询订单数据
+        Map<LocalDate, DailyStatisticsDTO> orderStatisticsMap = getDailyStatisticsMap(begin, end);
+
         // 有效订单数列表
         List<Integer> validOrderCountList = new ArrayList<>();
         // 订单数列表
         List<Integer> orderCountList = new ArrayList<>();
 
-        // 查询每天的有效订单数和订单总数
         for (LocalDate date : dateList) {
-
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);    // 当天开始时间
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);      // 当天结束时间
-
-            // 查询每天的有效订单数 select count(id) from orders where order_time > ? and order_time < ? and status = 5
-            Integer validOrderCountDay = getOrderCount(beginTime, endTime, Orders.COMPLETED);
-
-            // 查询每天的订单总数 select count(id) from orders where order_time > ? and order_time < ?
-            Integer totalOrderCountDay = getOrderCount(beginTime, endTime, null);
-
-            validOrderCountList.add(validOrderCountDay);
-            orderCountList.add(totalOrderCountDay);
+            DailyStatisticsDTO dailyStatistics = orderStatisticsMap.get(date);
+            validOrderCountList.add(dailyStatistics.getValidOrderCount());
+            orderCountList.add(dailyStatistics.getTotalOrderCount());
         }
 
         // 计算时间区间内的有效订单数量
@@ -192,11 +183,8 @@ public class ReportServiceImpl implements ReportService {
     @Override
     public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
 
-        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);    // 最早时间
-        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);      // 最晚时间
-
-        // 封装数据表
-        List<GoodsSalesDTO> salesTop10List = orderMapper.getSalesTop10(beginTime, endTime);
+        // 从每日商品销量汇总中查询数据表
+        List<GoodsSalesDTO> salesTop10List = businessStatService.getSalesTop10(begin, end);
 
         // 数据表按name转成集合
         List<String> names = salesTop10List.stream().map(GoodsSalesDTO::getName).collect(Collectors.toList());
@@ -215,69 +203,121 @@ public class ReportServiceImpl implements ReportService {
     /**
      * 导出运营数据报表
      *
+     * @param begin
+     * @param end
      * @param response
      */
     @Override
-    public void exportBusinessDate(HttpServletResponse response) {
-        // 1.查询数据库，获取营业数据--最近30天
-        LocalDate dateBegin = LocalDate.now().minusDays(30);
-        LocalDate dateEnd = LocalDate.now().minusDays(1);
-        BusinessDataVO businessDataVO = workspaceService.getBusinessData(LocalDateTime.of(dateBegin, LocalTime.MIN),
-                LocalDateTime.of(dateEnd, LocalTime.MAX));
+    public void exportBusinessDate(LocalDate begin, LocalDate end, HttpServletResponse response) {
+        try {
+            // 通过输出流将Excel文件下载到客户端浏览器
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            ServletOutputStream out = response.getOutputStream();
+            exportBusinessDate(begin, end, out);
+
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 导出运营数据报表到指定输出流
+     *
+     * @param begin
+     * @param end
+     * @param out
+     * @throws IOException
+     */
+    @Override
+    public void exportBusinessDate(LocalDate begin, LocalDate end, OutputStream out) throws IOException {
+        // 1.一次查询区间内每天的营业数据，汇总数据由每日数据累加得到
+        List<DailyStatisticsDTO> dailyStatisticsList = businessStatService.listDailyStatistics(begin, end);
+        BusinessDataVO businessDataVO = workspaceService.getBusinessData(dailyStatisticsList);
 
         // 2.通过POI将数据写入到Excel文件中
         InputStream in = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
 
-
+        SXSSFWorkbook excel = null;
         try {
             // 基于模板文件创建一个新的Excel文件
-            XSSFWorkbook excel = new XSSFWorkbook(in);
+            XSSFWorkbook template = new XSSFWorkbook(in);
 
-            XSSFSheet sheet = excel.getSheet("Sheet1");
+            XSSFSheet templateSheet = template.getSheet("Sheet1");
 
             // 填充数据--时间
-            sheet.getRow(1).getCell(1).setCellValue("时间：" + dateBegin + "至" + dateEnd);
+            templateSheet.getRow(1).getCell(1).setCellValue("时间：" + begin + "至" + end);
 
             // 获得第 4 行
-            XSSFRow row = sheet.getRow(3);
+            XSSFRow row = templateSheet.getRow(3);
             row.getCell(2).setCellValue(businessDataVO.getTurnover());
             row.getCell(4).setCellValue(businessDataVO.getOrderCompletionRate());
             row.getCell(6).setCellValue(businessDataVO.getNewUsers());
 
             // 获得第 5 行
-            row = sheet.getRow(4);
+            row = templateSheet.getRow(4);
             row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
             row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
 
-            //填充数据--明细数据
-            for (int i = 0; i < 30; i++) {
-                LocalDate date = dateBegin.plusDays(i);
-                //查询某一天的营业数据
-                BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN),
-                        LocalDateTime.of(date, LocalTime.MAX));
-
-                row = sheet.getRow(7 + i);
-                row.getCell(1).setCellValue(String.valueOf(date));
-                row.getCell(2).setCellValue(businessData.getTurnover());
-                row.getCell(3).setCellValue(businessData.getValidOrderCount());
-                row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-                row.getCell(5).setCellValue(businessData.getUnitPrice());
-                row.getCell(6).setCellValue(businessData.getNewUsers());
+            // 记录模板中明细行的样式后删除模板明细行，明细数据改为流式写入
+            XSSFRow detailRow = templateSheet.getRow(DETAIL_FIRST_ROW);
+            float detailRowHeight = detailRow.getHeightInPoints();
+            CellStyle[] detailStyles = new CellStyle[DETAIL_LAST_CELL + 1];
+            for (int i = 1; i <= DETAIL_LAST_CELL; i++) {
+                detailStyles[i] = detailRow.getCell(i).getCellStyle();
+            }
+            for (int i = templateSheet.getLastRowNum(); i >= DETAIL_FIRST_ROW; i--) {
+                templateSheet.removeRow(templateSheet.getRow(i));
             }
 
+            // 流式写入，内存中只保留窗口内的行，其余行写入临时文件
+            excel = new SXSSFWorkbook(template, ROW_ACCESS_WINDOW_SIZE);
+            SXSSFSheet sheet = excel.getSheet("Sheet1");
 
-            // 3.通过输出流将Excel文件下载到客户端浏览器
-            ServletOutputStream out = response.getOutputStream();
+            //填充数据--明细数据
+            int rowNum = DETAIL_FIRST_ROW;
+            for (DailyStatisticsDTO dailyStatistics : dailyStatisticsList) {
+                BusinessDataVO businessData = workspaceService.getBusinessData(Collections.singletonList(dailyStatistics));
+
+                SXSSFRow sxssfRow = sheet.createRow(rowNum++);
+                sxssfRow.setHeightInPoints(detailRowHeight);
+                createCell(sxssfRow, 1, detailStyles).setCellValue(String.valueOf(dailyStatistics.getDate()));
+                createCell(sxssfRow, 2, detailStyles).setCellValue(businessData.getTurnover());
+                createCell(sxssfRow, 3, detailStyles).setCellValue(businessData.getValidOrderCount());
+                createCell(sxssfRow, 4, detailStyles).setCellValue(businessData.getOrderCompletionRate());
+                createCell(sxssfRow, 5, detailStyles).setCellValue(businessData.getUnitPrice());
+                createCell(sxssfRow, 6, detailStyles).setCellValue(businessData.getNewUsers());
+            }
+
+            // 3.将Excel文件写入输出流
             excel.write(out);
 
             // 4.关闭资源
-            out.close();
             excel.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        } finally {
+            // 删除流式写入产生的临时文件
+            if (excel != null) {
+                excel.dispose();
+            }
         }
     }
 
+    /**
+     * 创建明细单元格并设置模板样式
+     *
+     * @param row
+     * @param column
+     * @param styles
+     * @return
+     */
+    private Cell createCell(SXSSFRow row, int column, CellStyle[] styles) {
+
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(styles[column]);
+
+        return cell;
+    }
+
     /**
      * 获取日期列表
      *
@@ -299,21 +339,18 @@ public class ReportServiceImpl implements ReportService {
     }
 
     /**
-     * 根据条件查询订单数
+     * 查询每日汇总数据，以日期为key，没有数据的日期补0
      *
      * @param begin
      * @param end
-     * @param status
      * @return
      */
-    private Integer getOrderCount(LocalDateTime begin, LocalDateTime end, Integer status) {
+    private Map<LocalDate, DailyStatisticsDTO> getDailyStatisticsMap(LocalDate begin, LocalDate end) {
 
-        Map map = new HashMap();
-        map.put("begin", begin);
-        map.put("end", end);
-        map.put("status", status);
+        List<DailyStatisticsDTO> dailyStatisticsList = businessStatService.listDailyStatistics(begin, end);
 
-        return orderMapper.countByMap(map);
+        return dailyStatisticsList.stream()
+                .collect(Collectors.toMap(DailyStatisticsDTO::getDate, dailyStatistics -> dailyStatistics));
     }
 
 }
@@ -3,6 +3,7 @@ package com.sky.service.impl;
 import com.fasterxml.jackson.databind.util.BeanUtil;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.ProductSnapshotCache;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -22,6 +23,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.List;
 
 @Service
@@ -33,6 +35,9 @@ public class SetmealServiceImpl implements SetmealService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+
     /**
      * 新增套餐
      * @param setmealDTO
@@ -53,6 +58,9 @@ public class SetmealServiceImpl implements SetmealService {
         }
         setmealDishMapper.insertBatch(setmealDishes);
 
+        //清除该id可能存在的旧快照
+        productSnapshotCache.evictSetmeals(Collections.singletonList(setmealId));
+
     }
 
     /**
@@ -83,7 +91,7 @@ public class SetmealServiceImpl implements SetmealService {
     @Override
     public void deleteBatch(List<Long> ids) {
 
-        //判断套餐能否删除，是否处于起售状态
+        //判断套餐能否删除，是否处于起售状态，需要读取数据库中的最新状态
         for (Long id: ids) {
             Setmeal setmeal = setmealMapper.getById(id);
             if (setmeal.getStatus() == StatusConstant.ENABLE) {
@@ -98,6 +106,7 @@ public class SetmealServiceImpl implements SetmealService {
         //根据套餐id删除套餐和菜品的关联数据
         setmealDishMapper.deleteBySetmealIds(ids);
 
+        productSnapshotCache.evictSetmeals(ids);
     }
 
     /**
@@ -109,7 +118,7 @@ public class SetmealServiceImpl implements SetmealService {
     public SetmealVO getByIdWithDishes(Long id) {
 
         //根据id查询套餐对象
-        Setmeal setmeal = setmealMapper.getById(id);
+        Setmeal setmeal = productSnapshotCache.getSetmeal(id);
 
         //根据套餐id查询对应的菜品数据
         List<SetmealDish> setmealDishList = setmealDishMapper.getBySetmealId(id);
@@ -153,6 +162,8 @@ public class SetmealServiceImpl implements SetmealService {
         });
         setmealDishMapper.insertBatch(setmealDishes);
 
+        productSnapshotCache.evictSetmeals(Collections.singletonList(setmealId));
+
     }
 
     /**
@@ -170,6 +181,8 @@ public class SetmealServiceImpl implements SetmealService {
 
         setmealMapper.update(setmeal);
 
+        productSnapshotCache.evictSetmeals(Collections.singletonList(id));
+
     }
 
     /**
@@ -0,0 +1,160 @@
+package com.sky.service.impl;
+
+import com.sky.service.ShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 店铺营业状态在每个节点的内存中保存一份，查询时不访问redis
+ * 修改状态时通过redis广播通知所有节点，并定时从redis同步，防止漏收通知
+ * 每次修改都分配递增的版本号，通知和定时同步都只接受比本地更新的版本，先读取的旧状态不会覆盖后收到的新状态
+ */
+@Service
+@Slf4j
+public class ShopServiceImpl implements ShopService {
+
+    //旧版本保存的店铺营业状态，没有版本号，仅在尚未保存带版本号的状态时读取
+    public static final String KEY = "SHOP_STATUS";
+
+    //带版本号的店铺营业状态，格式：版本号 状态
+    public static final String STATE_KEY = "SHOP_STATUS_STATE";
+
+    //最近分配的店铺营业状态版本号
+    private static final String VERSION_KEY = "SHOP_STATUS_VERSION";
+
+    //店铺营业状态变更通知的redis频道
+    public static final String CHANNEL = "sky:shop:status";
+
+    //分配版本号、保存状态并广播在同一个脚本中执行，返回分配的版本号
+    //版本号取redis服务器的毫秒时间且大于上一个版本号，redis数据丢失后分配的版本号仍比各节点本地的版本号新
+    private static final RedisScript<Long> SET_STATUS_SCRIPT = new DefaultRedisScript<>(
+            "local time = redis.call('time') " +
+            "local version = time[1] * 1000 + math.floor(time[2] / 1000) " +
+            "local last = tonumber(redis.call('get', KEYS[2]) or '0') " +
+            "if version <= last then version = last + 1 end " +
+            "version = string.format('%.0f', version) " +
+            "redis.call('set', KEYS[2], version) " +
+            "local state = version .. ' ' .. ARGV[1] " +
+            "redis.call('set', KEYS[1], state) " +
+            "redis.call('publish', ARGV[2], state) " +
+            "return tonumber(version)",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private volatile Integer status;
+
+    //本地状态的版本号，只在apply中读写
+    private long version = -1;
+
+    @PostConstruct
+    public void init() {
+
+        //订阅店铺营业状态变更通知，消息内容为：版本号 状态
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onStatusMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+
+        refresh();
+    }
+
+    /**
+     * 设置店铺营业状态，并通知所有节点
+     * @param status
+     */
+    @Override
+    public void setStatus(Integer status) {
+
+        Long version = stringRedisTemplate.execute(SET_STATUS_SCRIPT, Arrays.asList(STATE_KEY, VERSION_KEY),
+                String.valueOf(status), CHANNEL);
+
+        apply(version, status);
+    }
+
+    /**
+     * 获取店铺营业状态，直接读取本节点内存中的状态
+     * @return
+     */
+    @Override
+    public Integer getStatus() {
+        return status;
+    }
+
+    /**
+     * 从redis重新加载店铺营业状态
+     */
+    @Override
+    public void refresh() {
+
+        String state = stringRedisTemplate.opsForValue().get(STATE_KEY);
+        if (state != null) {
+            applyState(state);
+            return;
+        }
+
+        //尚未保存带版本号的状态时读取旧版本的状态，版本号视为0
+        apply(0L, (Integer) redisTemplate.opsForValue().get(KEY));
+    }
+
+    /**
+     * 处理店铺营业状态变更通知
+     * @param message
+     */
+    private void onStatusMessage(String message) {
+
+        log.info("收到店铺营业状态变更通知: {}", message);
+
+        try {
+            applyState(message);
+        } catch (RuntimeException e) {
+            //消息格式不正确时以redis中的数据为准
+            refresh();
+        }
+    }
+
+    /**
+     * 解析并应用带版本号的状态，格式：版本号 状态
+     * @param state
+     */
+    private void applyState(String state) {
+        int index = state.indexOf(' ');
+        apply(Long.parseLong(state.substring(0, index)), Integer.valueOf(state.substring(index + 1)));
+    }
+
+    /**
+     * 应用指定版本的状态，版本号比本地旧时忽略
+     * @param version
+     * @param latest
+     */
+    private synchronized void apply(long version, Integer latest) {
+
+        if (version < this.version) {
+            return;
+        }
+
+        if (latest != null && !latest.equals(status)) {
+            log.info("同步店铺营业状态: {} -> {}, 版本: {}", status, latest, version);
+        }
+        this.version = version;
+        status = latest;
+    }
+
+}
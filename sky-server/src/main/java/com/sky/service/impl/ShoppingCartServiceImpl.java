@@ -1,32 +1,31 @@
 package com.sky.service.impl;
 
+import com.sky.cart.ShoppingCartStore;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
-import com.sky.entity.Setmeal;
+import com.sky.dto.ShoppingCartOperationDTO;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.ShoppingCartMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.service.ShoppingCartService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
-    @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
-
-    @Autowired
-    private SetmealMapper setmealMapper;
+    //一次批量修改最多包含的操作数
+    private static final int MAX_BATCH_OPERATIONS = 100;
 
     @Autowired
-    private DishMapper dishMapper;
+    private ShoppingCartStore shoppingCartStore;
 
     /**
      * 添加购物车
@@ -35,42 +34,14 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Override
     public void add(ShoppingCartDTO shoppingCartDTO) {
 
-        //判断当前加入到购物车的商品是否已经存在
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         Long userId = BaseContext.getCurrentId();   //获取微信用户id
         shoppingCart.setUserId(userId);     //将用户id绑定到对应购物车里
+        shoppingCart.setNumber(1);
 
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
-
-        //若已经存在，只需将数量加1
-        if (shoppingCartList != null && shoppingCartList.size() > 0) {
-            ShoppingCart cart = shoppingCartList.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
-        } else {
-            //若不存在，则插入购物车数据
-            Long setmealId = shoppingCartDTO.getSetmealId();
-            Long dishId = shoppingCartDTO.getDishId();
-            if (setmealId != null) {
-                //本次添加到购物车的是套餐
-                Setmeal setmeal = setmealMapper.getById(setmealId);
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
-            } else {
-                //本次添加到购物车的是菜品
-                Dish dish = dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            }
-
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-
-            shoppingCartMapper.insert(shoppingCart);
-        }
+        //商品已经存在时数量加1，不存在时加入购物车
+        shoppingCartStore.add(shoppingCart);
     }
 
 
@@ -84,11 +55,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         //获取当前微信用户id
         Long userId = BaseContext.getCurrentId();
 
-        ShoppingCart shoppingCart = ShoppingCart.builder()
-                .userId(userId)
-                .build();
-
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartStore.list(userId);
 
         return shoppingCartList;
     }
@@ -103,7 +70,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         //获取当前微信用户id
         Long userId = BaseContext.getCurrentId();
 
-        shoppingCartMapper.deleteByUserId(userId);
+        shoppingCartStore.clean(userId);
 
     }
 
@@ -123,8 +90,89 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
 
         shoppingCart.setUserId(userId);
 
-        shoppingCartMapper.deleteOne(shoppingCart);
+        shoppingCartStore.deleteOne(shoppingCart);
+
+    }
+
+
+    /**
+     * 批量修改购物车，同一商品的多个操作先合并为一个操作
+     * @param operations
+     */
+    @Override
+    @Transactional
+    public void batch(List<ShoppingCartOperationDTO> operations) {
+
+        if (operations == null || operations.isEmpty()) {
+            return;
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_OPERATION_TOO_MANY);
+        }
+
+        //获取当前微信用户id
+        Long userId = BaseContext.getCurrentId();
+
+        //按操作顺序合并同一商品的操作，key为商品key
+        Map<String, ShoppingCartOperationDTO> operationMap = new LinkedHashMap<>();
+        for (ShoppingCartOperationDTO operation : operations) {
+            checkOperation(operation);
+
+            String itemKey = operation.getSetmealId() != null
+                    ? "setmeal:" + operation.getSetmealId()
+                    : "dish:" + operation.getDishId() + ":" + (operation.getDishFlavor() == null ? "" : operation.getDishFlavor());
+
+            ShoppingCartOperationDTO merged = ShoppingCartOperationDTO.builder()
+                    .type(operation.getType())
+                    .dishId(operation.getDishId())
+                    .setmealId(operation.getSetmealId())
+                    .dishFlavor(operation.getDishFlavor())
+                    .number(operation.getNumber())
+                    .build();
+
+            ShoppingCartOperationDTO previous = operationMap.get(itemKey);
+            if (ShoppingCartOperationDTO.ADD.equals(merged.getType()) && previous != null) {
+                if (ShoppingCartOperationDTO.REMOVE.equals(previous.getType())) {
+                    //先删除再增加，相当于设置为本次增加的数量
+                    merged.setType(ShoppingCartOperationDTO.SET);
+                } else {
+                    //在之前增加或设置的数量上累加
+                    merged.setType(previous.getType());
+                    merged.setNumber(previous.getNumber() + merged.getNumber());
+                }
+            }
+            if (ShoppingCartOperationDTO.SET.equals(merged.getType()) && merged.getNumber() == 0) {
+                merged.setType(ShoppingCartOperationDTO.REMOVE);
+            }
+
+            operationMap.put(itemKey, merged);
+        }
 
+        shoppingCartStore.batch(userId, new ArrayList<>(operationMap.values()));
+    }
+
+    /**
+     * 校验购物车操作，增加时数量为空则加1
+     * @param operation
+     */
+    private void checkOperation(ShoppingCartOperationDTO operation) {
+
+        Integer type = operation.getType();
+        boolean validItem = (operation.getDishId() == null) != (operation.getSetmealId() == null);
+        boolean validType = ShoppingCartOperationDTO.ADD.equals(type)
+                || ShoppingCartOperationDTO.SET.equals(type)
+                || ShoppingCartOperationDTO.REMOVE.equals(type);
+        if (!validItem || !validType) {
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_OPERATION_INVALID);
+        }
+
+        if (ShoppingCartOperationDTO.ADD.equals(type) && operation.getNumber() == null) {
+            operation.setNumber(1);
+        }
+        if (ShoppingCartOperationDTO.ADD.equals(type) && operation.getNumber() <= 0
+                || ShoppingCartOperationDTO.SET.equals(type) && (operation.getNumber() == null || operation.getNumber() < 0)) {
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_OPERATION_INVALID);
+        }
     }
 
 
@@ -8,6 +8,7 @@ import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.BusinessStatService;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +32,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private BusinessStatService businessStatService;
+
     /**
      * 微信登录
      * @param userLoginDTO
@@ -57,6 +61,9 @@ public class UserServiceImpl implements UserService {
                     .createTime(LocalDateTime.now())
                     .build();
             userMapper.insert(user);
+
+            //累加当天营业数据汇总中的新增用户数
+            businessStatService.increaseNewUser(user);
         }
 
         //返回用户对象
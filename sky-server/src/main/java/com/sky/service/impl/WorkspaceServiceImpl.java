@@ -1,11 +1,12 @@
 package com.sky.service.impl;
 
 import com.sky.constant.StatusConstant;
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.entity.Orders;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -17,6 +18,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -26,7 +28,7 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
-    private UserMapper userMapper;
+    private BusinessStatService businessStatService;
     @Autowired
     private DishMapper dishMapper;
     @Autowired
@@ -39,6 +41,20 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public BusinessDataVO getBusinessData(LocalDateTime begin, LocalDateTime end) {
+
+        //从每日汇总数据中查询区间内的营业数据
+        List<DailyStatisticsDTO> dailyStatisticsList =
+                businessStatService.listDailyStatistics(begin.toLocalDate(), end.toLocalDate());
+
+        return getBusinessData(dailyStatisticsList);
+    }
+
+    /**
+     * 根据每日汇总数据统计营业数据
+     * @param dailyStatisticsList
+     * @return
+     */
+    public BusinessDataVO getBusinessData(List<DailyStatisticsDTO> dailyStatisticsList) {
         /**
          * 营业额：当日已完成订单的总金额
          * 有效订单：当日已完成订单的数量
@@ -47,20 +63,21 @@ public class WorkspaceServiceImpl implements WorkspaceService {
          * 新增用户：当日新增用户的数量
          */
 
-        Map map = new HashMap();
-        map.put("begin",begin);
-        map.put("end",end);
-
-        //查询总订单数
-        Integer totalOrderCount = orderMapper.countByMap(map);
-
-        map.put("status", Orders.COMPLETED);
+        //总订单数
+        Integer totalOrderCount = 0;
         //营业额
-        Double turnover = orderMapper.sumByMap(map);
-        turnover = turnover == null? 0.0 : turnover;
-
+        Double turnover = 0.0;
         //有效订单数
-        Integer validOrderCount = orderMapper.countByMap(map);
+        Integer validOrderCount = 0;
+        //新增用户数
+        Integer newUsers = 0;
+
+        for (DailyStatisticsDTO dailyStatistics : dailyStatisticsList) {
+            totalOrderCount += dailyStatistics.getTotalOrderCount();
+            turnover += dailyStatistics.getTurnover();
+            validOrderCount += dailyStatistics.getValidOrderCount();
+            newUsers += dailyStatistics.getNewUsers();
+        }
 
         Double unitPrice = 0.0;
 
@@ -72,9 +89,6 @@ public class WorkspaceServiceImpl implements WorkspaceService {
             unitPrice = turnover / validOrderCount;
         }
 
-        //新增用户数
-        Integer newUsers = userMapper.countByMap(map);
-
         return BusinessDataVO.builder()
                 .turnover(turnover)
                 .validOrderCount(validOrderCount)
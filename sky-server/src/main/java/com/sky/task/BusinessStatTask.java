@@ -0,0 +1,133 @@
+package com.sky.task;
+
+import com.sky.mapper.BusinessDailyStatMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * 营业数据汇总任务类，定时根据原始数据重建已结束日期的汇总数据
+ */
+@Component
+@Slf4j
+public class BusinessStatTask {
+
+    //每次重建最近几天的汇总数据
+    private static final int RECONCILE_DAYS = 7;
+
+    //重建锁，多个节点同一时刻只有一个节点重建
+    private static final String LOCK_KEY = "business_stat:rebuild_lock";
+
+    //重建锁的租约时间，首次补齐历史数据可能耗时较长
+    private static final Duration LOCK_TTL = Duration.ofMinutes(30);
+
+    //只释放自己持有的锁
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private BusinessStatService businessStatService;
+
+    @Autowired
+    private BusinessDailyStatMapper businessDailyStatMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    /**
+     * 启动完成后在后台重建汇总数据，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        taskScheduler.schedule(this::reconcile, Instant.now());
+    }
+
+    /**
+     * 重建最近几天的汇总数据，修正增量维护可能产生的偏差
+     * 首次运行时汇总表中没有历史数据，从最早的订单/用户数据开始补齐
+     * 通过redis锁保证多个节点不会同时重建
+     */
+    @Scheduled(cron = "0 0 2 * * ?")   //每天凌晨2点触发，在派送中订单自动完成之后
+    public void reconcile() {
+
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("其他节点正在重建营业数据汇总，本节点跳过");
+            return;
+        }
+
+        try {
+            doReconcile();
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(LOCK_KEY), token);
+        }
+    }
+
+    /**
+     * 重建最近几天的汇总数据
+     */
+    private void doReconcile() {
+
+        log.info("定时重建营业数据汇总: {}", LocalDateTime.now());
+
+        LocalDate end = LocalDate.now().minusDays(1);
+        LocalDate begin = end.minusDays(RECONCILE_DAYS - 1);
+
+        //汇总表中没有更早的数据，说明尚未补齐历史数据
+        if (businessDailyStatMapper.countBefore(begin) == 0) {
+            LocalDate earliest = getEarliestDate();
+            if (earliest != null && earliest.isBefore(begin)) {
+                begin = earliest;
+            }
+        }
+
+        businessStatService.rebuild(begin, end);
+    }
+
+    /**
+     * 获取原始数据中最早的日期
+     * @return
+     */
+    private LocalDate getEarliestDate() {
+
+        LocalDateTime minOrderTime = orderMapper.getMinOrderTime();
+        LocalDateTime minCreateTime = userMapper.getMinCreateTime();
+
+        if (minOrderTime == null && minCreateTime == null) {
+            return null;
+        }
+        if (minOrderTime == null || (minCreateTime != null && minCreateTime.isBefore(minOrderTime))) {
+            return minCreateTime.toLocalDate();
+        }
+        return minOrderTime.toLocalDate();
+    }
+
+}
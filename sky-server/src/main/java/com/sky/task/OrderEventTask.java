@@ -0,0 +1,53 @@
+package com.sky.task;
+
+import com.sky.order.OrderEventOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单事件任务类，定时推送发件箱中的订单事件
+ */
+@Component
+@Slf4j
+public class OrderEventTask {
+
+    //每次清理最多删除的事件数
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    @Autowired
+    private OrderEventOutbox orderEventOutbox;
+
+    /**
+     * 推送待推送的订单事件，有积压时连续推送直到处理完
+     */
+    @Scheduled(fixedDelay = 200)    //上一次处理完成200毫秒后再次触发
+    public void dispatchOrderEvent() {
+
+        try {
+            while (orderEventOutbox.dispatch() > 0) {
+                //继续推送下一批
+            }
+        } catch (Exception e) {
+            log.error("推送订单事件失败", e);
+        }
+    }
+
+    /**
+     * 清理过期的已推送事件
+     */
+    @Scheduled(cron = "0 30 2 * * ?")  //每天凌晨2点30分触发
+    public void purgeOrderEvent() {
+
+        int count = 0;
+        int deleted;
+        do {
+            deleted = orderEventOutbox.purge(PURGE_BATCH_SIZE);
+            count += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+
+        log.info("清理已推送订单事件{}个", count);
+    }
+
+}
@@ -2,14 +2,17 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderTimeoutQueue;
+import com.sky.properties.OrderProperties;
+import com.sky.service.OrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * 订单任务类，定时处理订单状态
@@ -18,32 +21,64 @@ import java.util.List;
 @Slf4j
 public class OrderTask {
 
+    private static final String TIMEOUT_CANCEL_REASON = "订单超时，自动取消";
+
+    //每批取消的超时订单数
+    private static final int CANCEL_BATCH_SIZE = 100;
+
+    //定时批量修改订单状态时每批处理的订单数
+    private static final int SWEEP_BATCH_SIZE = 500;
+
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
     /**
-     * 处理未付款超时订单 (超时15min)，自动取消订单
+     * 处理超时队列中已到期的未付款订单，分批取消
      */
-    @Scheduled(cron = "0 * * * * ?")    //每分钟触发一次
-    public void processTimeoutOrder() {
+    @Scheduled(fixedDelay = 1000)   //上一次处理完成1秒后再次触发
+    public void processExpiredOrder() {
+
+        List<Long> orderIds;
+        do {
+            orderIds = orderTimeoutQueue.pollExpired(CANCEL_BATCH_SIZE);
+            if (orderIds.isEmpty()) {
+                return;
+            }
 
-        log.info("定时处理超时订单: {}", LocalDateTime.now());
+            try {
+                //只取消仍未付款的订单，已付款或已取消的订单不受影响
+                Integer count = orderMapper.updateStatusByIds(orderIds, Orders.PENDING_PAYMENT, timeoutCancelTarget());
+                log.info("自动取消超时订单{}个，到期订单id: {}", count, orderIds);
+            } catch (Exception e) {
+                log.error("自动取消超时订单失败，重新放回队列: {}", orderIds, e);
+                orderTimeoutQueue.requeue(orderIds);
+                return;
+            }
+        } while (orderIds.size() == CANCEL_BATCH_SIZE);
+    }
 
-        //找到处理超时订单
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, time);
+    /**
+     * 兜底处理未付款超时订单，防止超时队列中的数据丢失后订单一直不被取消
+     */
+    @Scheduled(cron = "0 0/30 * * * ?")    //每30分钟触发一次
+    public void processTimeoutOrder() {
 
-        //修改超时订单信息
-        if (ordersList != null && ordersList.isEmpty()) {
-            for (Orders orders : ordersList) {
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelTime(LocalDateTime.now());
-                orders.setCancelReason("订单超时，自动取消");
+        log.info("定时处理超时订单: {}", LocalDateTime.now());
 
-                orderMapper.update(orders);
-            }
-        }
+        //找到处理超时订单，分批取消
+        LocalDateTime time = LocalDateTime.now().minusMinutes(orderProperties.getPaymentTimeout());
+        int count = sweep(Orders.PENDING_PAYMENT, time, this::timeoutCancelTarget);
 
+        log.info("兜底取消超时订单{}个", count);
     }
 
     /**
@@ -54,18 +89,45 @@ public class OrderTask {
 
         log.info("定时处理处于派送中的订单: {}", LocalDateTime.now());
 
-        //找到每天凌晨0点前下单的订单
+        //找到每天凌晨0点前下单的订单，分批完成
         LocalDateTime time = LocalDateTime.now().plusMinutes(-60);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, time);
+        int count = sweep(Orders.DELIVERY_IN_PROGRESS, time, () -> Orders.builder()
+                .status(Orders.COMPLETED)
+                .deliveryTime(LocalDateTime.now())
+                .build());
 
-        //修改派送中订单信息
-        if (ordersList != null && ordersList.isEmpty()) {
-            for (Orders orders : ordersList) {
-                orders.setStatus(Orders.COMPLETED);
-                orderMapper.update(orders);
-            }
-        }
+        log.info("自动完成派送中订单{}个", count);
+    }
+
+    /**
+     * 分批修改指定状态且下单时间早于指定时间的订单，每批在单独的事务中处理，避免一次锁定大量订单
+     * @param fromStatus
+     * @param orderTime
+     * @param target 生成每批订单的目标状态
+     * @return 修改的订单总数
+     */
+    private int sweep(Integer fromStatus, LocalDateTime orderTime, Supplier<Orders> target) {
 
+        int count = 0;
+        List<Orders> ordersList;
+        do {
+            ordersList = orderService.transitionStatus(fromStatus, orderTime, target.get(), SWEEP_BATCH_SIZE);
+            count += ordersList.size();
+        } while (ordersList.size() == SWEEP_BATCH_SIZE);
+
+        return count;
+    }
+
+    /**
+     * 超时取消订单时修改的字段
+     * @return
+     */
+    private Orders timeoutCancelTarget() {
+        return Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason(TIMEOUT_CANCEL_REASON)
+                .cancelTime(LocalDateTime.now())
+                .build();
     }
 
 }
@@ -0,0 +1,27 @@
+package com.sky.task;
+
+import com.sky.service.ReportExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 报表导出任务类，定时清理过期的导出文件
+ */
+@Component
+@Slf4j
+public class ReportExportTask {
+
+    @Autowired
+    private ReportExportService reportExportService;
+
+    /**
+     * 清理过期的导出任务和文件
+     */
+    @Scheduled(cron = "0 0/10 * * * ?")   //每10分钟触发一次
+    public void cleanExpiredExport() {
+        reportExportService.cleanExpired();
+    }
+
+}
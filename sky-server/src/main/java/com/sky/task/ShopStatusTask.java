@@ -0,0 +1,27 @@
+package com.sky.task;
+
+import com.sky.service.ShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 店铺营业状态同步任务类，防止漏收状态变更通知导致各节点状态不一致
+ */
+@Component
+@Slf4j
+public class ShopStatusTask {
+
+    @Autowired
+    private ShopService shopService;
+
+    /**
+     * 定时从redis同步店铺营业状态
+     */
+    @Scheduled(cron = "0/30 * * * * ?")   //每30秒触发一次
+    public void resync() {
+        shopService.refresh();
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 管理端通知合并发送
+ * 一个时间窗口内产生的通知合并为一批，每条通知只序列化一次，整批推送给所有客户端
+ */
+@Component
+public class NotificationBatcher {
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    //等待发送的通知，元素为已序列化的消息
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    //是否已安排发送
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * 加入待发送的通知，时间窗口结束后统一发送
+     * @param message 已序列化的消息
+     */
+    public void add(String message) {
+
+        long batchWindow = webSocketProperties.getBatchWindow();
+        if (batchWindow <= 0) {
+            webSocketServer.sendToAllClient(message);
+            return;
+        }
+
+        pending.add(message);
+
+        //窗口内第一条通知负责安排发送
+        if (scheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now().plusMillis(batchWindow));
+        }
+    }
+
+    /**
+     * 发送当前窗口内的所有通知
+     */
+    private void flush() {
+
+        //先清除标记再取出通知，之后加入的通知会安排下一次发送
+        scheduled.set(false);
+
+        List<String> messages = new ArrayList<>();
+        String message;
+        while ((message = pending.poll()) != null) {
+            messages.add(message);
+        }
+
+        if (!messages.isEmpty()) {
+            webSocketServer.sendToAllClient(messages);
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.sky.websocket;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 管理端通知总线
+ * 通知通过redis广播到所有节点，每个节点再推送给本节点的WebSocket客户端
+ * 每条通知带有唯一id，同一条通知在每个节点只推送一次
+ * 通知的序号在广播前从redis中预先分配，由调用方先记录下来再广播，重新广播时沿用原序号，
+ * 同一条通知在各节点和调用方的记录中序号始终一致
+ */
+@Component
+@Slf4j
+public class NotificationBus {
+
+    //管理端通知的redis频道
+    public static final String CHANNEL = "sky:ws:notification";
+
+    //通知序号
+    private static final String SEQ_KEY = "sky:ws:notification_seq";
+
+    //依次广播一批通知，消息格式：序号 通知id 推送内容
+    private static final RedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 3 do " +
+            "  redis.call('publish', KEYS[1], ARGV[i] .. ' ' .. ARGV[i + 1] .. ' ' .. ARGV[i + 2]) " +
+            "end " +
+            "return #ARGV / 3",
+            Long.class);
+
+    //序号小于指定值时调整为指定值
+    private static final RedisScript<Long> INIT_SEQ_SCRIPT = new DefaultRedisScript<>(
+            "if tonumber(redis.call('get', KEYS[1]) or '0') < tonumber(ARGV[1]) then " +
+            "  redis.call('set', KEYS[1], ARGV[1]) return 1 " +
+            "end " +
+            "return 0",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private NotificationBatcher notificationBatcher;
+
+    @Autowired
+    private NotificationHistory notificationHistory;
+
+    //最近推送过的通知id，用于去重，value表示推送时是否带有序号
+    private final Cache<String, Boolean> deliveredIds = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    @PostConstruct
+    public void init() {
+
+        //订阅管理端通知
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onNotification(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 为推送内容加上序号，推送内容为json对象，直接在开头插入序号字段，不重新序列化
+     * @param seq
+     * @param message
+     * @return
+     */
+    public static String withSeq(long seq, String message) {
+        return "{\"seq\":" + seq + "," + message.substring(1);
+    }
+
+    /**
+     * 保证之后分配的序号大于指定值，防止redis数据丢失后序号从头开始
+     * @param seq 已分配的最大序号
+     */
+    public void initSeq(long seq) {
+        stringRedisTemplate.execute(INIT_SEQ_SCRIPT, Collections.singletonList(SEQ_KEY), String.valueOf(seq));
+    }
+
+    /**
+     * 预先分配一批连续的序号
+     * @param count
+     * @return 第一个序号
+     */
+    public long reserveSeq(int count) {
+        return stringRedisTemplate.opsForValue().increment(SEQ_KEY, count) - count + 1;
+    }
+
+    /**
+     * 按顺序向所有节点的管理端客户端广播一批已分配序号的通知
+     * 广播失败时仍推送给本节点的客户端，并抛出异常由调用方重试
+     * @param notifications
+     */
+    public void publishAll(List<Notification> notifications) {
+
+        List<String> args = new ArrayList<>(notifications.size() * 3);
+        for (Notification notification : notifications) {
+            args.add(String.valueOf(notification.getSeq()));
+            args.add(notification.getId());
+            args.add(notification.getMessage());
+        }
+
+        try {
+            stringRedisTemplate.execute(PUBLISH_SCRIPT, Collections.singletonList(CHANNEL), args.toArray());
+        } catch (RuntimeException e) {
+            //广播失败时先推送给本节点的客户端，再由调用方重试广播，重试成功后本节点按id去重
+            log.warn("广播管理端通知失败，先推送本节点: {}", e.getMessage());
+            deliverLocal(notifications);
+            throw e;
+        }
+    }
+
+    /**
+     * 只推送给本节点的客户端，用于redis不可用时，之后广播成功时本节点按id去重
+     * @param notifications 未分配序号时seq为null
+     */
+    public void deliverLocal(List<Notification> notifications) {
+        notifications.forEach(notification ->
+                deliver(notification.getId(), notification.getSeq(), notification.getMessage()));
+    }
+
+    /**
+     * 处理收到的广播通知
+     * @param body 序号 通知id 推送内容
+     */
+    private void onNotification(String body) {
+
+        int first = body.indexOf(' ');
+        int second = first < 0 ? -1 : body.indexOf(' ', first + 1);
+        if (second < 0) {
+            log.warn("管理端通知格式不正确: {}", body);
+            return;
+        }
+
+        long seq;
+        try {
+            seq = Long.parseLong(body.substring(0, first));
+        } catch (NumberFormatException e) {
+            log.warn("管理端通知格式不正确: {}", body);
+            return;
+        }
+
+        deliver(body.substring(first + 1, second), seq, body.substring(second + 1));
+    }
+
+    /**
+     * 推送给本节点的客户端，已推送过的通知直接忽略
+     * @param id
+     * @param seq 广播失败在本节点直接推送时为null
+     * @param message
+     */
+    private void deliver(String id, Long seq, String message) {
+
+        if (id == null || message == null) {
+            return;
+        }
+
+        Boolean delivered = deliveredIds.asMap().putIfAbsent(id, seq != null);
+        if (delivered != null) {
+            //之前广播失败时已在本节点推送过，补记到通知历史中
+            if (seq != null && !delivered && deliveredIds.asMap().replace(id, false, true)) {
+                notificationHistory.record(seq, withSeq(seq, message));
+            }
+            log.debug("忽略重复的管理端通知: {}", id);
+            return;
+        }
+
+        if (seq != null) {
+            message = withSeq(seq, message);
+            notificationHistory.record(seq, message);
+        }
+
+        notificationBatcher.add(message);
+    }
+
+    /**
+     * 待广播的通知
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Notification {
+
+        //通知id，用于去重
+        private final String id;
+
+        //序号，未分配时为null
+        private final Long seq;
+
+        //推送给客户端的内容（json对象，不含序号）
+        private final String message;
+
+    }
+
+}
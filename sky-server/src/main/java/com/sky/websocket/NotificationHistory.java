@@ -0,0 +1,118 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.OrderEvent;
+import com.sky.mapper.OrderEventMapper;
+import com.sky.order.OrderEventOutbox;
+import com.sky.properties.WebSocketProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 最近的带序号通知，按序号排序，超过容量时淘汰序号最小的通知
+ * 序号在广播时分配，与各节点收到通知的顺序一致
+ */
+@Component
+public class NotificationHistory {
+
+    //重置通知的类型，错过的通知过多无法补发时发送，客户端收到后重新加载订单列表，并以其中的序号作为收到的最大序号
+    public static final int RESET = 0;
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+
+    //key为序号，value为已序列化的消息
+    private final ConcurrentSkipListMap<Long, String> history = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 记录通知
+     * @param seq
+     * @param message 带序号的消息
+     */
+    public void record(Long seq, String message) {
+
+        if (history.putIfAbsent(seq, message) != null) {
+            return;
+        }
+
+        if (size.incrementAndGet() > webSocketProperties.getHistorySize()) {
+            if (history.pollFirstEntry() != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 查询指定序号之后的通知，按序号升序
+     * 本节点保留的通知不连续时（早于保留范围，或广播通知在本节点丢失），从订单事件发件箱中查询整个区间补齐
+     * 错过的通知超过limit条时只返回一条重置通知
+     * @param lastSeq 客户端收到的最大序号
+     * @param limit 最多补发的通知数
+     * @return
+     */
+    public List<String> replay(long lastSeq, int limit) {
+
+        TreeMap<Long, String> messageMap = new TreeMap<>(history.tailMap(lastSeq, false));
+
+        //序号连续时条数等于区间长度，否则说明有缺失；本节点没有保留的通知时查询之后的全部通知
+        long lastKey = history.isEmpty() ? Long.MAX_VALUE : history.lastKey();
+        boolean missing = messageMap.isEmpty()
+                ? lastKey > lastSeq
+                : messageMap.lastKey() - lastSeq > messageMap.size();
+        if (missing) {
+            long beforeSeq = messageMap.isEmpty() ? lastKey : messageMap.lastKey();
+            //多查一条用于判断是否超过limit
+            List<OrderEvent> orderEventList = orderEventMapper.listSentBetween(lastSeq, beforeSeq, limit + 1);
+            if (orderEventList.size() > limit) {
+                return reset();
+            }
+            for (OrderEvent orderEvent : orderEventList) {
+                messageMap.putIfAbsent(orderEvent.getSentSeq(),
+                        NotificationBus.withSeq(orderEvent.getSentSeq(), OrderEventOutbox.toMessage(orderEvent)));
+            }
+        }
+
+        if (messageMap.size() > limit) {
+            return reset();
+        }
+
+        return new ArrayList<>(messageMap.values());
+    }
+
+    /**
+     * 生成重置通知 json: type seq，seq为当前最大的序号
+     * @return
+     */
+    private List<String> reset() {
+
+        long seq = 0;
+        Long maxSentSeq = orderEventMapper.getMaxSentSeq();
+        if (maxSentSeq != null) {
+            seq = maxSentSeq;
+        }
+        if (!history.isEmpty()) {
+            seq = Math.max(seq, history.lastKey());
+        }
+
+        Map map = new HashMap();
+        map.put("type", RESET);
+        map.put("seq", seq);
+
+        return Collections.singletonList(JSON.toJSONString(map));
+    }
+
+}
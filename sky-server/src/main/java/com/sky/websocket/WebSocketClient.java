@@ -0,0 +1,182 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebSocket客户端连接，每个连接有一个有界的待发送队列，通过异步发送依次发出
+ * 推送消息只是放入队列，不会因为某个客户端网络慢而阻塞调用方
+ */
+@Slf4j
+public class WebSocketClient {
+
+    public static final String OVERFLOW_DROP = "drop";
+
+    public static final String OVERFLOW_CLOSE = "close";
+
+    private final String sid;
+
+    private final Session session;
+
+    private final BlockingQueue<String> queue;
+
+    private final String overflowPolicy;
+
+    //是否接收合并后的通知，合并后的消息为json数组
+    private final boolean batch;
+
+    //是否有消息正在发送，同一个连接同一时刻只能有一条异步发送
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    //补发完成前暂存的新通知，不为null时新通知先放在这里，补发的通知入队后再依次入队
+    private List<String> held;
+
+    public WebSocketClient(String sid, Session session, int queueCapacity, String overflowPolicy, long sendTimeout, boolean batch) {
+        this.sid = sid;
+        this.session = session;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batch = batch;
+        session.getAsyncRemote().setSendTimeout(sendTimeout);
+    }
+
+    public String getSid() {
+        return sid;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    /**
+     * 暂存之后的新通知，直到调用release，保证补发的通知先于新通知发出
+     */
+    public synchronized void hold() {
+        held = new ArrayList<>();
+    }
+
+    /**
+     * 先将补发的通知放入待发送队列，再放入暂存的新通知，之后的新通知直接入队
+     * @param replayed 补发的通知
+     */
+    public synchronized void release(List<String> replayed) {
+
+        replayed.forEach(this::enqueue);
+
+        if (held != null) {
+            held.forEach(this::enqueue);
+            held = null;
+        }
+    }
+
+    /**
+     * 将消息放入待发送队列，补发完成前先暂存
+     * @param message
+     */
+    public void send(String message) {
+
+        synchronized (this) {
+            if (held != null) {
+                held.add(message);
+                return;
+            }
+        }
+
+        enqueue(message);
+    }
+
+    /**
+     * 将消息放入待发送队列
+     * @param message
+     */
+    private void enqueue(String message) {
+
+        if (!session.isOpen()) {
+            return;
+        }
+
+        if (!queue.offer(message)) {
+            if (OVERFLOW_CLOSE.equals(overflowPolicy)) {
+                log.warn("客户端{}待发送消息过多，断开连接", sid);
+                close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "消息积压过多"));
+                return;
+            }
+
+            //丢弃最早的消息，保留最新的消息
+            queue.poll();
+            if (!queue.offer(message)) {
+                log.warn("客户端{}待发送消息过多，丢弃消息", sid);
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * 关闭连接
+     * @param closeReason
+     */
+    public void close(CloseReason closeReason) {
+
+        queue.clear();
+        try {
+            session.close(closeReason);
+        } catch (IOException e) {
+            log.warn("关闭客户端{}连接失败: {}", sid, e.getMessage());
+        }
+    }
+
+    /**
+     * 取出队列中的下一条消息异步发送，发送完成后继续发送下一条
+     */
+    private void drain() {
+
+        if (!sending.compareAndSet(false, true)) {
+            return;
+        }
+
+        String message = queue.poll();
+        if (message == null) {
+            sending.set(false);
+            //释放发送标记前可能有新消息入队
+            if (!queue.isEmpty()) {
+                drain();
+            }
+            return;
+        }
+
+        try {
+            session.getAsyncRemote().sendText(message, result -> {
+                if (!result.isOK()) {
+                    log.warn("向客户端{}发送消息失败: {}", sid, result.getException().getMessage());
+                }
+                sending.set(false);
+                drain();
+            });
+        } catch (Exception e) {
+            //连接已关闭等情况
+            log.warn("向客户端{}发送消息失败: {}", sid, e.getMessage());
+            sending.set(false);
+
+            //连接已关闭时丢弃剩余消息，否则继续发送下一条，不等待下一次入队
+            if (session.isOpen()) {
+                drain();
+            } else {
+                queue.clear();
+            }
+        }
+    }
+
+}
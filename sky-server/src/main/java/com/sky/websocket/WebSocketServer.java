@@ -1,33 +1,94 @@
 package com.sky.websocket;
 
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket服务
+ * 每个连接由容器创建一个实例，连接和配置保存在静态变量中供所有实例共用
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
 
-    //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static final String CLIENT_KEY = "client";
+
+    //客户端连接时通过 ?batch=true 声明接收合并后的通知
+    private static final String BATCH_PARAM = "batch";
+
+    //客户端重连时通过 ?lastSeq=序号 带上收到的最大通知序号，补发之后的通知
+    private static final String LAST_SEQ_PARAM = "lastSeq";
+
+    //存放客户端连接，key为客户端id
+    private static final Map<String, WebSocketClient> clientMap = new ConcurrentHashMap<>();
+
+    private static WebSocketProperties webSocketProperties;
+
+    private static NotificationHistory notificationHistory;
+
+    @Autowired
+    public void setWebSocketProperties(WebSocketProperties webSocketProperties) {
+        WebSocketServer.webSocketProperties = webSocketProperties;
+    }
+
+    @Autowired
+    public void setNotificationHistory(NotificationHistory notificationHistory) {
+        WebSocketServer.notificationHistory = notificationHistory;
+    }
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+
+        log.info("客户端：{}建立连接", sid);
+
+        WebSocketClient client = new WebSocketClient(sid, session,
+                webSocketProperties.getQueueCapacity(),
+                webSocketProperties.getOverflowPolicy(),
+                webSocketProperties.getSendTimeout(),
+                isBatch(session));
+        session.getUserProperties().put(CLIENT_KEY, client);
+
+        //需要补发时先暂存新通知，注册后查询的补发通知入队后再发出暂存的新通知，
+        //避免序号更大的新通知先到达后连接又断开，客户端以该序号重连而永久错过补发的通知
+        Long lastSeq = getLastSeq(session, sid);
+        if (lastSeq != null) {
+            client.hold();
+        }
+
+        //同一个客户端id重复连接时关闭之前的连接
+        WebSocketClient previous = clientMap.put(sid, client);
+        if (previous != null) {
+            previous.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "客户端重新连接"));
+        }
+
+        //暂存期间的新通知可能已包含在补发的通知中，客户端按序号忽略已收到的通知
+        if (lastSeq != null) {
+            List<String> messages = Collections.emptyList();
+            try {
+                messages = replay(client, lastSeq);
+            } finally {
+                client.release(messages);
+            }
+        }
     }
 
     /**
@@ -37,7 +98,7 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{}的信息: {}", sid, message);
     }
 
     /**
@@ -46,26 +107,121 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+
+        log.info("连接断开: {}", sid);
+
+        //只移除当前连接，不影响同一客户端id的新连接
+        WebSocketClient client = (WebSocketClient) session.getUserProperties().get(CLIENT_KEY);
+        if (client != null) {
+            clientMap.remove(sid, client);
+        }
+    }
+
+    /**
+     * 连接出错调用的方法
+     *
+     * @param sid
+     * @param throwable
+     */
+    @OnError
+    public void onError(Session session, @PathParam("sid") String sid, Throwable throwable) {
+        log.warn("客户端：{}连接出错: {}", sid, throwable.getMessage());
     }
 
     /**
-     * 群发
+     * 群发，消息放入每个客户端的待发送队列后立即返回
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+        for (WebSocketClient client : clientMap.values()) {
+            client.send(message);
+        }
+    }
+
+    /**
+     * 群发一批已序列化的消息
+     * 接收合并通知的客户端收到一个json数组，其他客户端逐条接收，每个客户端共用同一份消息内容
+     *
+     * @param messages
+     */
+    public void sendToAllClient(List<String> messages) {
+
+        //消息已是json，直接拼接为json数组，不再重复序列化
+        String batchMessage = null;
+
+        for (WebSocketClient client : clientMap.values()) {
+            if (client.isBatch()) {
+                if (batchMessage == null) {
+                    batchMessage = "[" + String.join(",", messages) + "]";
+                }
+                client.send(batchMessage);
+            } else {
+                messages.forEach(client::send);
             }
         }
     }
 
+    /**
+     * 获取客户端重连时带上的最大通知序号
+     *
+     * @param session
+     * @param sid
+     * @return 未带上或格式不正确时为null
+     */
+    private Long getLastSeq(Session session, String sid) {
+
+        List<String> values = session.getRequestParameterMap().get(LAST_SEQ_PARAM);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(values.get(0));
+        } catch (NumberFormatException e) {
+            log.warn("客户端：{}的通知序号不正确: {}", sid, values.get(0));
+            return null;
+        }
+    }
+
+    /**
+     * 查询客户端断线期间错过的通知
+     *
+     * @param client
+     * @param lastSeq
+     * @return 待补发的消息，与群发相同，接收合并通知的客户端为一个json数组，其他客户端逐条接收
+     */
+    private List<String> replay(WebSocketClient client, long lastSeq) {
+
+        //逐条接收的客户端补发的通知数不能超过待发送队列的容量，超过时发送重置通知
+        int limit = webSocketProperties.getHistorySize();
+        if (!client.isBatch()) {
+            limit = Math.min(limit, webSocketProperties.getQueueCapacity());
+        }
+
+        List<String> messages = notificationHistory.replay(lastSeq, limit);
+        if (messages.isEmpty()) {
+            return messages;
+        }
+
+        log.info("向客户端：{}补发序号{}之后的通知{}条", client.getSid(), lastSeq, messages.size());
+
+        if (client.isBatch()) {
+            return Collections.singletonList("[" + String.join(",", messages) + "]");
+        }
+        return messages;
+    }
+
+    /**
+     * 客户端是否声明接收合并后的通知
+     *
+     * @param session
+     * @return
+     */
+    private boolean isBatch(Session session) {
+        List<String> values = session.getRequestParameterMap().get(BATCH_PARAM);
+        return values != null && values.contains("true");
+    }
+
 }
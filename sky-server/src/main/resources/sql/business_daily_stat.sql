@@ -0,0 +1,19 @@
+-- 每日营业数据汇总表，由订单状态变化增量维护，并由 BusinessStatTask 每日重建
+create table if not exists business_daily_stat
+(
+    stat_date         date                     not null comment '统计日期' primary key,
+    turnover          decimal(12, 2) default 0 not null comment '营业额',
+    valid_order_count int            default 0 not null comment '有效订单数',
+    total_order_count int            default 0 not null comment '订单总数',
+    new_users         int            default 0 not null comment '新增用户数',
+    update_time       datetime                 null comment '更新时间'
+) comment '每日营业数据汇总';
+
+-- 每日商品销量汇总表
+create table if not exists goods_daily_sales
+(
+    stat_date date                 not null comment '统计日期',
+    name      varchar(32)          not null comment '商品名称',
+    number    int        default 0 not null comment '销量',
+    primary key (stat_date, name)
+) comment '每日商品销量汇总';
@@ -0,0 +1,18 @@
+-- 订单事件发件箱，事件与订单修改在同一事务中写入，由 OrderEventTask 异步分批推送
+create table if not exists order_event
+(
+    id              bigint auto_increment comment '主键' primary key,
+    order_id        bigint        not null comment '订单id',
+    type            int           not null comment '事件类型 1来单提醒 2客户催单',
+    content         varchar(255)  null comment '提醒内容',
+    status          int default 0 not null comment '推送状态 0待推送 1已推送 2推送失败',
+    retry_count     int default 0 not null comment '推送失败次数',
+    next_retry_time datetime      not null comment '下次推送时间',
+    sent_seq        bigint        null comment '推送序号，广播前分配并记录，重新推送时沿用',
+    create_time     datetime      not null comment '创建时间'
+) comment '订单事件发件箱';
+
+create index idx_status_next_retry_time on order_event (status, next_retry_time);
+
+-- 管理端重连时按推送序号补发通知
+create index idx_sent_seq on order_event (sent_seq);
@@ -0,0 +1,11 @@
+-- 支付回调按订单号做带状态条件的更新（update ... where number = ? and status = ?），订单号必须唯一，否则一次回调会修改多个订单
+
+-- 1.重复的订单号只保留id最小的一行，其余订单在原订单号后追加 -订单id，生成的订单号只含数字，追加后不会与其他订单号重复
+update orders o
+    join orders keep
+         on keep.number = o.number
+             and keep.id < o.id
+set o.number = concat(o.number, '-', o.id);
+
+-- 2.添加唯一索引
+create unique index uk_number on orders (number);
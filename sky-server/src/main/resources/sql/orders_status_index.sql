@@ -0,0 +1,2 @@
+-- 定时任务按状态和下单时间分批锁定订单（select ... for update），需要该索引避免扫描并锁定无关的行
+create index idx_status_order_time on orders (status, order_time);
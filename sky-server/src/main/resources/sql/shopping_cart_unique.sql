@@ -0,0 +1,25 @@
+-- 购物车中同一用户的同一商品（菜品+口味或套餐）只保留一行，加入购物车时通过 on duplicate key update 原子累加数量
+-- dish_id、setmeal_id、dish_flavor 可能为null，唯一索引中null互不相等，因此使用生成列作为商品key
+
+-- 1.合并已有的重复数据，数量累加到id最小的一行
+update shopping_cart sc
+    join (select min(id) as id, sum(number) as number
+          from shopping_cart
+          group by user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, '')
+          having count(*) > 1) t on sc.id = t.id
+set sc.number = t.number;
+
+delete sc
+from shopping_cart sc
+         join shopping_cart keep
+              on keep.user_id = sc.user_id
+                  and ifnull(keep.dish_id, 0) = ifnull(sc.dish_id, 0)
+                  and ifnull(keep.setmeal_id, 0) = ifnull(sc.setmeal_id, 0)
+                  and ifnull(keep.dish_flavor, '') = ifnull(sc.dish_flavor, '')
+                  and keep.id < sc.id;
+
+-- 2.添加商品key生成列及唯一索引
+alter table shopping_cart
+    add column item_key varchar(100) generated always as
+        (concat(ifnull(dish_id, 0), ':', ifnull(setmeal_id, 0), ':', ifnull(dish_flavor, ''))) stored comment '商品key',
+    add unique key uk_user_item (user_id, item_key);